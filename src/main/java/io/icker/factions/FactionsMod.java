@@ -40,16 +40,18 @@ public class FactionsMod implements ModInitializer {
             PlaceholdersWrapper.init();
         }
 
+        // dimensions have to be known as valid before the startup audit runs
+        WorldUtils.register();
         ChatManager.register();
         FactionsManager.register();
         InteractionManager.register();
         ServerManager.register();
         SoundManager.register();
         WorldManager.register();
-        WorldUtils.register();
 
         CommandRegistrationCallback.EVENT.register(FactionsMod::registerCommands);
         ClaimEvents.ADD.register(FactionsMod::callFill);
+        ClaimEvents.ADD_ALL.register(FactionsMod::callFill);
     }
 
     private record Point(int x, int z) {
@@ -146,6 +148,17 @@ public class FactionsMod implements ModInitializer {
         }
     }
 
+    /**
+     * Fills from every claim of a batch that still borders unclaimed chunks, the others cannot close anything
+     */
+    public static void callFill(List<Claim> newClaims) {
+        for (Claim newClaim : newClaims) {
+            if (numberOfConnections(getConnections(new Point(newClaim.x, newClaim.z), newClaim.factionID, newClaim.level)) < 4) {
+                callFill(newClaim);
+            }
+        }
+    }
+
     private static void fill(Claim newClaim) {
         Point start = new Point(newClaim.x, newClaim.z);
         UUID factionID = newClaim.factionID;
@@ -5,12 +5,14 @@ import io.icker.factions.api.persistents.Faction;
 import net.fabricmc.fabric.api.event.Event;
 import net.fabricmc.fabric.api.event.EventFactory;
 
+import java.util.List;
+
 /**
 * Events related to {@link Claim}
 */
 public final class ClaimEvents {
     /**
-     * Called when a chunk claim is added by a faction (See {@link Claim})
+     * Called when a chunk claim is added by a faction (See {@link Claim}), claims added together fire {@link #ADD_ALL} instead
      */
     public static final Event<Add> ADD = EventFactory.createArrayBacked(Add.class, callbacks -> (claim) -> {
         for (Add callback : callbacks) {
@@ -25,7 +27,16 @@ public final class ClaimEvents {
     });
 
     /**
-     * Called when a faction removes a claim (See {@link Claim})
+     * Called once for a batch of claims added together (See {@link Claim#addAll})
+     */
+    public static final Event<AddAll> ADD_ALL = EventFactory.createArrayBacked(AddAll.class, callbacks -> (claims) -> {
+        for (AddAll callback : callbacks) {
+            callback.onAddAll(claims);
+        }
+    });
+
+    /**
+     * Called when a faction removes a claim (See {@link Claim}), claims removed together fire {@link #REMOVE_ALL} instead
      */
     public static final Event<Remove> REMOVE = EventFactory.createArrayBacked(Remove.class, callbacks -> (x, z, level, faction) -> {
         for (Remove callback : callbacks) {
@@ -33,6 +44,15 @@ public final class ClaimEvents {
         }
     });
 
+    /**
+     * Called once for a batch of claims removed together (See {@link Claim#removeAll})
+     */
+    public static final Event<RemoveAll> REMOVE_ALL = EventFactory.createArrayBacked(RemoveAll.class, callbacks -> (claims) -> {
+        for (RemoveAll callback : callbacks) {
+            callback.onRemoveAll(claims);
+        }
+    });
+
     @FunctionalInterface
     public interface Add {
         void onAdd(Claim claim);
@@ -42,4 +62,14 @@ public final class ClaimEvents {
     public interface Remove {
         void onRemove(int x, int z, String level, Faction faction);
     }
+
+    @FunctionalInterface
+    public interface AddAll {
+        void onAddAll(List<Claim> claims);
+    }
+
+    @FunctionalInterface
+    public interface RemoveAll {
+        void onRemoveAll(List<Claim> claims);
+    }
 }
@@ -65,6 +65,15 @@ public final class FactionEvents {
         }
     });
 
+    /**
+     * Called when the claims of a faction start or stop outweighing its power, leaving them unprotected while they do
+     */
+    public static final Event<OverclaimChange> OVERCLAIM_CHANGE = EventFactory.createArrayBacked(OverclaimChange.class, callbacks -> (faction, overclaimed) -> {
+        for (OverclaimChange callback : callbacks) {
+            callback.onOverclaimChange(faction, overclaimed);
+        }
+    });
+
     /**
      * Called when a faction sets its {@link Home}
      */
@@ -75,7 +84,7 @@ public final class FactionEvents {
     });
 
     /**
-     * Called when a faction removes all its claims. (Note that each claim will also run a {@link ClaimEvents} REMOVE event)
+     * Called when a faction removes all its claims. (Note that the claims will also run a single {@link ClaimEvents} REMOVE_ALL event)
      */
     public static final Event<RemoveAllClaims> REMOVE_ALL_CLAIMS = EventFactory.createArrayBacked(RemoveAllClaims.class, callbacks -> (faction) -> {
         for (RemoveAllClaims callback : callbacks) {
@@ -114,6 +123,11 @@ public final class FactionEvents {
         void onPowerChange(Faction faction, int oldPower);
     }
 
+    @FunctionalInterface
+    public interface OverclaimChange {
+        void onOverclaimChange(Faction faction, boolean overclaimed);
+    }
+
     @FunctionalInterface
     public interface SetHome {
         void onSetHome(Faction faction, Home home);
@@ -2,18 +2,31 @@ package io.icker.factions.api.persistents;
 
 import io.icker.factions.api.events.ClaimEvents;
 import io.icker.factions.api.persistents.User.Rank;
+import io.icker.factions.database.ClaimFormat;
 import io.icker.factions.database.Database;
 import io.icker.factions.database.Field;
+import io.icker.factions.database.Journal;
 import io.icker.factions.database.Name;
+import io.icker.factions.database.RegionStore;
+import io.icker.factions.util.DecisionCache;
 import io.icker.factions.util.WorldUtils;
 
-import java.util.HashMap;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Name("Claim")
 public class Claim {
-    private static final HashMap<String, Claim> STORE = Database.load(Claim.class, Claim::getKey);
+    /**
+     * How many claims of a batch go into one journal record, well below its size limit
+     */
+    private static final int JOURNAL_BATCH_SIZE = 256;
+
+    private static final RegionStore<Claim> STORE = new RegionStore<>(Claim.class, new ClaimFormat(), "claims", c -> c.level, c -> c.x, c -> c.z, c -> c.factionID);
 
     @Field("X")
     public int x;
@@ -48,41 +61,238 @@ public class Claim {
         return String.format("%s-%d-%d", level, x, z);
     }
 
+    public static void load() {
+        STORE.load();
+        STORE.migrate(Database.getFile(Claim.class));
+    }
+
     public static Claim get(int x, int z, String level) {
-        return STORE.get(String.format("%s-%d-%d", level, x, z));
+        return STORE.get(level, x, z);
+    }
+
+    /**
+     * @param level The dimension as interned by {@link WorldUtils#getID}
+     */
+    public static Claim get(int x, int z, int level) {
+        return STORE.get(level, x, z);
+    }
+
+    /**
+     * @return Every claim from (minX, minZ) to (maxX, maxZ), both included
+     */
+    public static List<Claim> query(String level, int minX, int minZ, int maxX, int maxZ) {
+        return STORE.query(level, minX, minZ, maxX, maxZ);
+    }
+
+    /**
+     * Calls the visitor for every claim from (minX, minZ) to (maxX, maxZ), both included. Claims must not be
+     * added while visiting, use the list form for that.
+     */
+    public static void query(String level, int minX, int minZ, int maxX, int maxZ, Consumer<Claim> visitor) {
+        STORE.query(level, minX, minZ, maxX, maxZ, visitor);
     }
 
     public static List<Claim> getByFaction(UUID factionID) {
-        return STORE.values()
-            .stream()
-            .filter(c -> c.factionID.equals(factionID))
-            .toList();
+        return STORE.getByOwner(factionID);
+    }
+
+    public static int countByFaction(UUID factionID) {
+        return STORE.countByOwner(factionID);
+    }
+
+    /**
+     * Checks the per-faction claim index against the stored claims and repairs it where they disagree
+     * @return How many inconsistencies were repaired
+     */
+    public static int verify() {
+        return STORE.verify();
+    }
+
+    /**
+     * Has {@link #snapshot} follow the claims from now on. The first snapshot reads every region once and keeps
+     * the position and faction of every claim.
+     */
+    public static void enableSnapshots() {
+        STORE.enableSnapshots();
+    }
+
+    public static void publishSnapshot() {
+        STORE.publish();
+    }
+
+    /**
+     * @return Which faction had which chunk at the end of the last tick, safe to read from any thread
+     */
+    public static RegionStore.View snapshot() {
+        return STORE.getView();
     }
 
     public static void audit() {
-        STORE.values().removeIf((claim) -> Faction.get(claim.factionID) == null || !WorldUtils.isValid(claim.level));
+        for (UUID factionID : STORE.getOwners()) {
+            if (Faction.get(factionID) == null) {
+                STORE.getByOwner(factionID).forEach(claim -> STORE.remove(claim.level, claim.x, claim.z));
+            }
+        }
+        for (String level : STORE.getLevels()) {
+            if (!WorldUtils.isValid(level)) {
+                STORE.getByLevel(level).forEach(claim -> STORE.remove(claim.level, claim.x, claim.z));
+            }
+        }
     }
 
     public static void add(Claim claim) {
-        STORE.put(claim.getKey(), claim);
+        STORE.put(claim);
+        Journal.append(Journal.CLAIM_ADD, claim::writeAdd);
         ClaimEvents.ADD.invoker().onAdd(claim);
+        updateOverclaimed(List.of(claim));
     }
 
     public static void addWithoutRerunning(Claim claim) {
-        STORE.put(claim.getKey(), claim);
+        STORE.put(claim);
+        Journal.append(Journal.CLAIM_ADD, claim::writeAdd);
         ClaimEvents.THE_OTHER_ADD.invoker().onAdd(claim);
+        updateOverclaimed(List.of(claim));
+    }
+
+    /**
+     * Adds every claim before any listener runs, then fires a single {@link ClaimEvents#ADD_ALL} for all of them
+     */
+    public static void addAll(List<Claim> claims) {
+        if (claims.isEmpty()) return;
+
+        claims.forEach(STORE::put);
+        journalAll(Journal.CLAIM_ADD_ALL, claims, (claim, out) -> claim.writeAdd(out));
+        ClaimEvents.ADD_ALL.invoker().onAddAll(claims);
+        updateOverclaimed(claims);
+    }
+
+    /**
+     * Removes every claim before any listener runs, then fires a single {@link ClaimEvents#REMOVE_ALL} for all of them
+     */
+    public static void removeAll(List<Claim> claims) {
+        if (claims.isEmpty()) return;
+
+        claims.forEach(claim -> STORE.remove(claim.level, claim.x, claim.z));
+        journalAll(Journal.CLAIM_REMOVE_ALL, claims, (claim, out) -> claim.writeRemove(out));
+        ClaimEvents.REMOVE_ALL.invoker().onRemoveAll(claims);
+        updateOverclaimed(claims);
+    }
+
+    /**
+     * Updates the overclaimed flag of every faction that owns one of the claims, once per faction
+     */
+    private static void updateOverclaimed(List<Claim> claims) {
+        HashSet<UUID> updated = new HashSet<UUID>();
+        for (Claim claim : claims) {
+            if (!updated.add(claim.factionID)) continue;
+
+            Faction faction = Faction.get(claim.factionID);
+            if (faction != null) faction.updateOverclaimed();
+        }
     }
 
     public Faction getFaction() {
         return Faction.get(factionID);
     }
 
+    /**
+     * Flags the claim as changed so it is written on the next save
+     */
+    public void markDirty() {
+        STORE.markDirty(this);
+    }
+
+    public boolean isDirty() {
+        return STORE.isDirty(this);
+    }
+
+    public void setAccessLevel(Rank accessLevel) {
+        this.accessLevel = accessLevel;
+        DecisionCache.invalidateAll();
+        markDirty();
+        Journal.append(Journal.CLAIM_ACCESS, out -> {
+            writeRemove(out);
+            out.writeByte(accessLevel.ordinal());
+        });
+    }
+
     public void remove() {
-        STORE.remove(getKey());
+        STORE.remove(level, x, z);
+        Journal.append(Journal.CLAIM_REMOVE, this::writeRemove);
         ClaimEvents.REMOVE.invoker().onRemove(x, z, level, Faction.get(factionID));
+        updateOverclaimed(List.of(this));
+    }
+
+    private void writeAdd(DataOutputStream out) throws IOException {
+        writeRemove(out);
+        Journal.writeUUID(out, factionID);
+        out.writeByte(accessLevel.ordinal());
+    }
+
+    private void writeRemove(DataOutputStream out) throws IOException {
+        out.writeUTF(level);
+        out.writeInt(x);
+        out.writeInt(z);
+    }
+
+    /**
+     * Journals a batch as few records as will fit, each one replayed as a whole or not at all
+     */
+    private static void journalAll(byte type, List<Claim> claims, BatchWriter writer) {
+        for (int start = 0; start < claims.size(); start += JOURNAL_BATCH_SIZE) {
+            List<Claim> batch = claims.subList(start, Math.min(start + JOURNAL_BATCH_SIZE, claims.size()));
+            Journal.append(type, out -> {
+                out.writeInt(batch.size());
+                for (Claim claim : batch) {
+                    writer.write(claim, out);
+                }
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchWriter {
+        void write(Claim claim, DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Applies a {@link Journal} record written by {@link #add}, {@link #remove}, their batch forms or
+     * {@link #setAccessLevel} without firing any events
+     */
+    public static void replay(byte type, DataInputStream in) throws IOException {
+        if (type == Journal.CLAIM_ACCESS) {
+            String level = in.readUTF();
+            int x = in.readInt();
+            int z = in.readInt();
+            Claim claim = STORE.get(level, x, z);
+            Rank accessLevel = Rank.values()[in.readByte()];
+            if (claim != null) {
+                claim.accessLevel = accessLevel;
+                claim.markDirty();
+                DecisionCache.invalidateAll();
+            }
+            return;
+        }
+
+        boolean batch = type == Journal.CLAIM_ADD_ALL || type == Journal.CLAIM_REMOVE_ALL;
+        int count = batch ? in.readInt() : 1;
+
+        for (int i = 0; i < count; i++) {
+            String level = in.readUTF();
+            int x = in.readInt();
+            int z = in.readInt();
+
+            if (type == Journal.CLAIM_ADD || type == Journal.CLAIM_ADD_ALL) {
+                Claim claim = new Claim(x, z, level, Journal.readUUID(in));
+                claim.accessLevel = Rank.values()[in.readByte()];
+                STORE.put(claim);
+            } else {
+                STORE.remove(level, x, z);
+            }
+        }
     }
 
-    public static void save() {
-        Database.save(Claim.class, STORE.values().stream().toList());
+    public static boolean save() {
+        return STORE.save();
     }
 }
@@ -3,8 +3,13 @@ package io.icker.factions.api.persistents;
 import io.icker.factions.FactionsMod;
 import io.icker.factions.api.events.FactionEvents;
 import io.icker.factions.database.Database;
+import io.icker.factions.database.DirtyTracker;
 import io.icker.factions.database.Field;
+import io.icker.factions.database.Journal;
 import io.icker.factions.database.Name;
+import io.icker.factions.database.SafeStore;
+import io.icker.factions.database.Snapshot;
+import io.icker.factions.util.DecisionCache;
 import io.icker.factions.util.WorldUtils;
 import net.minecraft.inventory.SimpleInventory;
 import net.minecraft.item.ItemStack;
@@ -12,11 +17,23 @@ import net.minecraft.util.Formatting;
 import net.minecraft.util.collection.DefaultedList;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.util.*;
 
 @Name("Faction")
 public class Faction {
-    private static final HashMap<UUID, Faction> STORE = Database.load(Faction.class, Faction::getID);
+    private static HashMap<UUID, Faction> STORE = new HashMap<UUID, Faction>();
+    private static final DirtyTracker<Faction> DIRTY = new DirtyTracker<>();
+    private static final DirtyTracker<Faction> SAFES = new DirtyTracker<>();
+    private static final Snapshot<UUID, Summary> SNAPSHOT = new Snapshot<>();
+    private static boolean snapshots = false;
+    private static final int RANK_COUNT = User.Rank.values().length;
+    private static final HashMap<String, Faction> NAMES = new HashMap<String, Faction>();
+    /**
+     * Keyed by the lowercase name, a separator and the name itself, so names differing only in case both fit and every name with a prefix is one sub map
+     */
+    private static final TreeMap<String, Faction> SORTED_NAMES = new TreeMap<String, Faction>();
 
     @Field("ID")
     private UUID id;
@@ -48,8 +65,13 @@ public class Faction {
     @Field("Home")
     private Home home;
 
+    /**
+     * Only set for factions saved before safes got their own files, moved to {@link SafeStore} on load
+     */
     @Field("Safe")
-    private SimpleInventory safe = new SimpleInventory(54);
+    private SimpleInventory legacySafe;
+
+    private SimpleInventory safe;
 
     @Field("Invites")
     public ArrayList<UUID> invites = new ArrayList<>();
@@ -57,9 +79,27 @@ public class Faction {
     @Field("Relationships")
     private ArrayList<Relationship> relationships = new ArrayList<>();
 
+    private final HashMap<UUID, Relationship> relationshipsByTarget = new HashMap<>();
+    private final HashSet<UUID> mutualAllies = new HashSet<>();
+    /**
+     * The factions that have declared this one an enemy
+     */
+    private final HashSet<UUID> enemiesOf = new HashSet<>();
+
     @Field("GuestPermissions")
     public ArrayList<Relationship.Permissions> guest_permissions = new ArrayList<>(FactionsMod.CONFIG.RELATIONSHIPS.DEFAULT_GUEST_PERMISSIONS);
 
+    /**
+     * Permission bitmasks of this faction's own ranks in its claims, by rank and claim access level, compiled on first use
+     */
+    private int[] memberAccess;
+    /**
+     * Permission bitmasks of other factions in this faction's member claims, compiled along with {@link #memberAccess}
+     */
+    private HashMap<UUID, Integer> foreignAccess;
+
+    private boolean overclaimed = false;
+
     public Faction(String name, String description, String motd, Formatting color, boolean open, int power) {
         this.id = UUID.randomUUID();
         this.name = name;
@@ -73,33 +113,132 @@ public class Faction {
     @SuppressWarnings("unused")
     public Faction() {}
 
+    /**
+     * What other threads may read of a faction, taken on the server thread and never changed afterwards
+     * @param home A copy of the home, or null if there is none
+     */
+    public record Summary(UUID id, String name, String description, Formatting color, int power, int memberCount, @Nullable Home home) {}
+
     @SuppressWarnings("unused")
     public String getKey() {
         return id.toString();
     }
 
+    public static void load() {
+        STORE = Database.load(Faction.class, Faction::getID);
+        DIRTY.clear();
+        SAFES.clear();
+        SNAPSHOT.markStale();
+
+        NAMES.clear();
+        SORTED_NAMES.clear();
+        for (Faction faction : STORE.values()) {
+            indexName(faction);
+
+            if (faction.legacySafe != null) {
+                faction.setSafe(faction.legacySafe);
+                faction.legacySafe = null;
+                faction.markDirty();
+            }
+        }
+        indexRelationships();
+    }
+
     @Nullable
     public static Faction get(UUID id) {
         return STORE.get(id);
     }
 
+    /**
+     * @return The faction with exactly this name, otherwise one whose name only differs in case
+     */
     @Nullable
     public static Faction getByName(String name) {
-        return STORE.values()
-            .stream()
-            .filter(f -> f.name.equals(name))
-            .findFirst()
-            .orElse(null);
+        Faction faction = NAMES.get(name);
+        if (faction != null) return faction;
+
+        String key = name.toLowerCase(Locale.ROOT) + '\0';
+        Map.Entry<String, Faction> entry = SORTED_NAMES.ceilingEntry(key);
+        return entry != null && entry.getKey().startsWith(key) ? entry.getValue() : null;
+    }
+
+    /**
+     * @return Every faction whose name starts with the prefix, ignoring case, sorted by name
+     */
+    public static List<Faction> getByNamePrefix(String prefix) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        return new ArrayList<Faction>(SORTED_NAMES.subMap(key, key + Character.MAX_VALUE).values());
     }
 
     public static void add(Faction faction) {
         STORE.put(faction.id, faction);
+        indexName(faction);
+        DIRTY.mark(faction);
+        SNAPSHOT.markStale();
+    }
+
+    private static void indexName(Faction faction) {
+        if (faction.name == null) return;
+
+        NAMES.put(faction.name, faction);
+        SORTED_NAMES.put(getSortKey(faction.name), faction);
+    }
+
+    private static void unindexName(Faction faction) {
+        if (faction.name == null) return;
+
+        NAMES.remove(faction.name, faction);
+        SORTED_NAMES.remove(getSortKey(faction.name), faction);
+    }
+
+    private static String getSortKey(String name) {
+        return name.toLowerCase(Locale.ROOT) + '\0' + name;
     }
 
     public static Collection<Faction> all() {
         return STORE.values();
     }
 
+    static void markSnapshotStale() {
+        SNAPSHOT.markStale();
+    }
+
+    /**
+     * Has {@link #snapshot} follow the factions from now on. Until then no summaries are built, so servers without a reader pay nothing.
+     */
+    public static void enableSnapshots() {
+        snapshots = true;
+        SNAPSHOT.markStale();
+    }
+
+    public static void publishSnapshot() {
+        if (!snapshots) return;
+
+        SNAPSHOT.publish(() -> {
+            HashMap<UUID, Summary> summaries = new HashMap<UUID, Summary>();
+            for (Faction faction : STORE.values()) {
+                summaries.put(faction.id, faction.summarize());
+            }
+            return summaries;
+        });
+    }
+
+    /**
+     * @return A summary of every faction by ID as of the end of the last tick, safe to read from any thread, or
+     * nothing before {@link #enableSnapshots}
+     */
+    public static Map<UUID, Summary> snapshot() {
+        return SNAPSHOT.get();
+    }
+
+    /**
+     * @return A summary of the faction as it is now, only to be called from the server thread
+     */
+    public Summary summarize() {
+        Home copy = home == null ? null : new Home(id, home.x, home.y, home.z, home.yaw, home.pitch, home.level);
+        return new Summary(id, name, description, getColor(), getPower(), getUserCount(), copy);
+    }
+
     @SuppressWarnings("unused")
     public static List<Faction> allBut(UUID id) {
         return STORE.values()
@@ -133,41 +272,58 @@ public class Faction {
     }
 
     public SimpleInventory getSafe() {
+        if (safe == null) {
+            safe = SafeStore.load(id);
+            safe.addListener(inventory -> SAFES.mark(this));
+        }
         return safe;
     }
 
     public DefaultedList<ItemStack> clearSafe() {
-        DefaultedList<ItemStack> stacks = this.safe.stacks;
-        this.safe = new SimpleInventory(54);
+        DefaultedList<ItemStack> stacks = getSafe().stacks;
+        setSafe(new SimpleInventory(54));
         return stacks;
     }
 
+    private void setSafe(SimpleInventory safe) {
+        this.safe = safe;
+        safe.addListener(inventory -> SAFES.mark(this));
+        SAFES.mark(this);
+    }
+
     public boolean isOpen() {
         return open;
     }
 
     public void setName(String name) {
+        unindexName(this);
         this.name = name;
+        indexName(this);
+        markDirty();
         FactionEvents.MODIFY.invoker().onModify(this);
     }
 
     public void setDescription(String description) {
         this.description = description;
+        markDirty();
         FactionEvents.MODIFY.invoker().onModify(this);
     }
 
     public void setMOTD(String motd) {
         this.motd = motd;
+        markDirty();
         FactionEvents.MODIFY.invoker().onModify(this);
     }
 
     public void setColor(Formatting color) {
         this.color = color.getName();
+        markDirty();
         FactionEvents.MODIFY.invoker().onModify(this);
     }
 
     public void setOpen(boolean open) {
         this.open = open;
+        markDirty();
         FactionEvents.MODIFY.invoker().onModify(this);
     }
 
@@ -179,7 +335,9 @@ public class Faction {
         if (newPower == oldPower) return 0;
 
         power = newPower;
+        markDirty();
         FactionEvents.POWER_CHANGE.invoker().onPowerChange(this, oldPower);
+        updateOverclaimed();
         return Math.abs(newPower - oldPower);
     }
 
@@ -189,20 +347,61 @@ public class Faction {
 
     public void addAdminPower(int amount) {
         adminPower += amount;
+        markDirty();
+        updateOverclaimed();
+    }
+
+    /**
+     * @return Whether the claims outweigh the power, which leaves them unprotected
+     */
+    public boolean isOverclaimed() {
+        return overclaimed;
+    }
+
+    /**
+     * Recomputes whether the faction is overclaimed after its power, members or claims changed, firing
+     * {@link FactionEvents#OVERCLAIM_CHANGE} if that crossed the threshold
+     */
+    public void updateOverclaimed() {
+        boolean overclaimed = getClaimCount() * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT > getPower();
+        if (overclaimed == this.overclaimed) return;
+
+        this.overclaimed = overclaimed;
+        FactionEvents.OVERCLAIM_CHANGE.invoker().onOverclaimChange(this, overclaimed);
+    }
+
+    /**
+     * Sets every overclaimed flag from the loaded claims and power without firing any events
+     */
+    public static void refreshOverclaimed() {
+        for (Faction faction : STORE.values()) {
+            faction.overclaimed = faction.getClaimCount() * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT > faction.getPower();
+        }
+        DecisionCache.invalidateAll();
     }
 
     public List<User> getUsers() {
         return User.getByFaction(id);
     }
 
+    public int getUserCount() {
+        return User.countByFaction(id);
+    }
+
+    public List<User> getOnlineUsers() {
+        return User.getOnlineByFaction(id);
+    }
+
     public List<Claim> getClaims() {
         return Claim.getByFaction(id);
     }
 
+    public int getClaimCount() {
+        return Claim.countByFaction(id);
+    }
+
     public void removeAllClaims() {
-        Claim.getByFaction(id)
-            .stream()
-            .forEach(Claim::remove);
+        Claim.removeAll(Claim.getByFaction(id));
         FactionEvents.REMOVE_ALL_CLAIMS.invoker().onRemoveAllClaims(this);
     }
 
@@ -220,11 +419,21 @@ public class Faction {
 
     public void setHome(Home home) {
         this.home = home;
+        markDirty();
         FactionEvents.SET_HOME.invoker().onSetHome(this, home);
     }
 
+    /**
+     * @return The relationship, or the shared {@link Relationship#NEUTRAL} one if there is none
+     */
     public Relationship getRelationship(UUID target) {
-        return relationships.stream().filter(rel -> rel.target.equals(target)).findFirst().orElse(new Relationship(target, Relationship.Status.NEUTRAL));
+        Relationship relationship = relationshipsByTarget.get(target);
+        return relationship == null ? Relationship.NEUTRAL : relationship;
+    }
+
+    private Relationship.Status getStatus(UUID target) {
+        Relationship relationship = relationshipsByTarget.get(target);
+        return relationship == null ? Relationship.Status.NEUTRAL : relationship.status;
     }
 
     public Relationship getReverse(Relationship rel) {
@@ -232,12 +441,11 @@ public class Faction {
     }
 
     public boolean isMutualAllies(UUID target) {
-        Relationship rel = getRelationship(target);
-        return rel.status == Relationship.Status.ALLY && getReverse(rel).status == Relationship.Status.ALLY;
+        return mutualAllies.contains(target);
     }
 
     public List<Relationship> getMutualAllies() {
-        return relationships.stream().filter(rel -> isMutualAllies(rel.target)).toList();
+        return relationships.stream().filter(rel -> mutualAllies.contains(rel.target)).toList();
     }
 
     public List<Relationship> getEnemiesWith() {
@@ -245,19 +453,200 @@ public class Faction {
     }
 
     public List<Relationship> getEnemiesOf() {
-        return relationships.stream().filter(rel -> getReverse(rel).status == Relationship.Status.ENEMY).toList();
+        return relationships.stream().filter(rel -> enemiesOf.contains(rel.target)).toList();
+    }
+
+    /**
+     * @return Whether members of the viewer with the given rank may do this in a claim of this faction with the given access level
+     */
+    public boolean allows(Faction viewer, User.Rank rank, User.Rank accessLevel, Relationship.Permissions permission) {
+        if (memberAccess == null) compileAccess();
+
+        int bit = 1 << permission.ordinal();
+        if (viewer == this) {
+            if (rank == null) return false;
+            User.Rank level = accessLevel == null ? User.Rank.MEMBER : accessLevel;
+            return (memberAccess[rank.ordinal() * RANK_COUNT + level.ordinal()] & bit) != 0;
+        }
+
+        if (accessLevel != User.Rank.MEMBER) return false;
+        Integer access = foreignAccess.get(viewer.id);
+        return access != null && (access & bit) != 0;
+    }
+
+    public void setGuestPermission(Relationship.Permissions permission, boolean allowed) {
+        guest_permissions.remove(permission);
+        if (allowed) guest_permissions.add(permission);
+        invalidateAccess();
+        markDirty();
+    }
+
+    /**
+     * Drops the compiled access table, so the next check compiles it again from the guest permissions, relationships and config
+     */
+    public void invalidateAccess() {
+        memberAccess = null;
+        foreignAccess = null;
+        DecisionCache.invalidateAll();
+    }
+
+    private void compileAccess() {
+        Relationship.Permissions[] permissions = Relationship.Permissions.values();
+        User.Rank[] ranks = User.Rank.values();
+        int all = (1 << permissions.length) - 1;
+
+        // ranks are declared from highest to lowest, so a rank reaches every access level declared after it
+        int[] members = new int[RANK_COUNT * RANK_COUNT];
+        for (User.Rank rank : ranks) {
+            for (User.Rank level : ranks) {
+                int access = 0;
+                if (level.ordinal() >= rank.ordinal()) {
+                    access = all;
+                } else if (rank == User.Rank.GUEST && level == User.Rank.MEMBER) {
+                    access = getMask(guest_permissions);
+                }
+                members[rank.ordinal() * RANK_COUNT + level.ordinal()] = access;
+            }
+        }
+
+        HashMap<UUID, Integer> foreign = new HashMap<UUID, Integer>();
+        for (Relationship relationship : relationships) {
+            int access = getMask(relationship.permissions);
+            if (FactionsMod.CONFIG.RELATIONSHIPS.ALLY_OVERRIDES_PERMISSIONS && mutualAllies.contains(relationship.target)) access = all;
+            if (access != 0) foreign.put(relationship.target, access);
+        }
+
+        memberAccess = members;
+        foreignAccess = foreign;
+    }
+
+    private static int getMask(List<Relationship.Permissions> permissions) {
+        int mask = 0;
+        for (Relationship.Permissions permission : permissions) {
+            mask |= 1 << permission.ordinal();
+        }
+        return mask;
     }
 
     public void removeRelationship(UUID target) {
-        relationships = new ArrayList<>(relationships.stream().filter(rel -> !rel.target.equals(target)).toList());
+        dropRelationship(target);
+        markDirty();
+        Journal.append(Journal.RELATIONSHIP_REMOVE, out -> {
+            Journal.writeUUID(out, id);
+            Journal.writeUUID(out, target);
+        });
     }
 
     public void setRelationship(Relationship relationship) {
-        if (getRelationship(relationship.target) != null) {
-            removeRelationship(relationship.target);
-        }
-        if (relationship.status != Relationship.Status.NEUTRAL || !relationship.permissions.isEmpty())
+        putRelationship(relationship);
+        markDirty();
+        Journal.append(Journal.RELATIONSHIP_SET, out -> {
+            Journal.writeUUID(out, id);
+            Journal.writeUUID(out, relationship.target);
+            out.writeByte(relationship.status.ordinal());
+            out.writeInt(getMask(relationship.permissions));
+        });
+    }
+
+    private void dropRelationship(UUID target) {
+        relationships.removeIf(rel -> rel.target.equals(target));
+        relationshipsByTarget.remove(target);
+        link(this, target);
+    }
+
+    private void putRelationship(Relationship relationship) {
+        relationships.removeIf(rel -> rel.target.equals(relationship.target));
+        relationshipsByTarget.remove(relationship.target);
+        if (relationship.status != Relationship.Status.NEUTRAL || !relationship.permissions.isEmpty()) {
             relationships.add(relationship);
+            relationshipsByTarget.put(relationship.target, relationship);
+        }
+        link(this, relationship.target);
+    }
+
+    /**
+     * Brings the mutual ally and enemy sets of both factions in line with how they see each other now
+     */
+    private static void link(Faction faction, UUID target) {
+        Faction other = get(target);
+        Relationship.Status status = faction.getStatus(target);
+        faction.invalidateAccess();
+        if (other != null) other.invalidateAccess();
+        boolean allies = other != null && status == Relationship.Status.ALLY && other.getStatus(faction.id) == Relationship.Status.ALLY;
+
+        if (allies) {
+            faction.mutualAllies.add(target);
+        } else {
+            faction.mutualAllies.remove(target);
+        }
+        if (other == null) return;
+
+        if (allies) {
+            other.mutualAllies.add(faction.id);
+        } else {
+            other.mutualAllies.remove(faction.id);
+        }
+
+        if (status == Relationship.Status.ENEMY) {
+            other.enemiesOf.add(faction.id);
+        } else {
+            other.enemiesOf.remove(faction.id);
+        }
+    }
+
+    /**
+     * Rebuilds the relationship lookups of every faction from the stored lists
+     */
+    private static void indexRelationships() {
+        for (Faction faction : STORE.values()) {
+            faction.relationshipsByTarget.clear();
+            faction.mutualAllies.clear();
+            faction.enemiesOf.clear();
+            for (Relationship relationship : faction.relationships) {
+                faction.relationshipsByTarget.put(relationship.target, relationship);
+            }
+        }
+
+        for (Faction faction : STORE.values()) {
+            for (Relationship relationship : faction.relationships) {
+                link(faction, relationship.target);
+            }
+        }
+    }
+
+    /**
+     * Applies a {@link Journal} record written by {@link #setRelationship} or {@link #removeRelationship} without firing any events
+     */
+    public static void replay(byte type, DataInputStream in) throws IOException {
+        Faction faction = get(Journal.readUUID(in));
+        UUID target = Journal.readUUID(in);
+
+        if (type == Journal.RELATIONSHIP_SET) {
+            Relationship relationship = new Relationship(target, Relationship.Status.values()[in.readByte()]);
+            int permissions = in.readInt();
+            for (Relationship.Permissions permission : Relationship.Permissions.values()) {
+                if ((permissions & (1 << permission.ordinal())) != 0) relationship.permissions.add(permission);
+            }
+
+            if (faction == null) return;
+            faction.putRelationship(relationship);
+        } else {
+            if (faction == null) return;
+            faction.dropRelationship(target);
+        }
+        faction.markDirty();
+    }
+
+    /**
+     * Flags the faction as changed so it is written on the next save
+     */
+    public void markDirty() {
+        DIRTY.mark(this);
+        SNAPSHOT.markStale();
+    }
+
+    public boolean isDirty() {
+        return DIRTY.isDirty(this);
     }
 
     public void remove() {
@@ -272,6 +661,10 @@ public class Faction {
         }
         removeAllClaims();
         STORE.remove(id);
+        unindexName(this);
+        SNAPSHOT.markStale();
+        DIRTY.markRemoved(this);
+        SAFES.markRemoved(this);
         FactionEvents.DISBAND.invoker().onDisband(this);
     }
 
@@ -284,23 +677,64 @@ public class Faction {
     }
 
     public static void audit() {
-        STORE.values().removeIf((faction) -> {
+        // one pass over the users instead of a member lookup per faction
+        Set<UUID> owned = User.getOwnedFactionIDs();
+
+        // find the broken factions in parallel, then fix them on this thread since fixing fires events
+        List<Faction> broken = STORE.values()
+            .parallelStream()
+            .filter(faction -> !owned.contains(faction.id)
+                || (faction.home != null && !WorldUtils.isValid(faction.home.level))
+                || faction.relationships.stream().anyMatch(rel -> !STORE.containsKey(rel.target) || !owned.contains(rel.target)))
+            .toList();
+
+        for (Faction faction : broken) {
+            if (!owned.contains(faction.id)) {
+                STORE.remove(faction.id);
+                SNAPSHOT.markStale();
+                unindexName(faction);
+                DIRTY.markRemoved(faction);
+                SAFES.markRemoved(faction);
+                continue;
+            }
+
             if (faction.home != null && !WorldUtils.isValid(faction.home.level)) {
                 faction.setHome(null);
             }
 
-            faction.relationships.removeIf((rel) -> Faction.get(rel.target) == null);
+            // relationships with factions removed by this audit go as well
+            if (faction.relationships.removeIf((rel) -> Faction.get(rel.target) == null || !owned.contains(rel.target))) {
+                faction.markDirty();
+            }
+        }
 
-            return faction.getUsers().stream().noneMatch((user) -> user.rank == User.Rank.OWNER);
-        });
+        if (!broken.isEmpty()) indexRelationships();
     }
 
-    public static void save() {
-        Database.save(Faction.class, STORE.values().stream().toList());
+    public static boolean save() {
+        boolean safesSaved = true;
+        for (Faction faction : SAFES.getChanged()) {
+            safesSaved &= SafeStore.save(faction.id, faction.safe);
+        }
+        for (Faction faction : SAFES.getRemoved()) {
+            SafeStore.delete(faction.id);
+        }
+
+        // a faction file written without its legacy safe must not land before the safe file does
+        if (!safesSaved) return false;
+        SAFES.clear();
+
+        if (!DIRTY.isDirty()) return true;
+
+        if (Database.save(Faction.class, Faction::getID, STORE.values(), DIRTY)) {
+            DIRTY.clear();
+            return true;
+        }
+        return false;
     }
 
 //  TODO(samu): import per-player power patch
     public int calculateMaxPower(){
-        return FactionsMod.CONFIG.POWER.BASE + (getUsers().size() * FactionsMod.CONFIG.POWER.MEMBER);
+        return FactionsMod.CONFIG.POWER.BASE + (getUserCount() * FactionsMod.CONFIG.POWER.MEMBER);
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package io.icker.factions.api.persistents;
 import io.icker.factions.database.Field;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.UUID;
 
 public class Relationship {
@@ -21,6 +22,37 @@ public class Relationship {
         USE_INVENTORIES
     }
 
+    /**
+     * Returned for every faction without a relationship. It is shared, so it has no target and its permissions
+     * cannot be added to, copy it into a relationship towards the target before changing anything.
+     */
+    public static final Relationship NEUTRAL = new Relationship(null, Status.NEUTRAL, new EmptyList<Permissions>());
+
+    /**
+     * A list that always stays empty. Nothing can be removed from an empty list, so only adding has to be refused.
+     */
+    private static class EmptyList<E> extends ArrayList<E> {
+        @Override
+        public boolean add(E element) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(int index, E element) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends E> elements) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends E> elements) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     @Field("Target")
     public UUID target;
 
@@ -35,6 +67,12 @@ public class Relationship {
         this.status = status;
     }
 
+    private Relationship(UUID target, Status status, ArrayList<Permissions> permissions) {
+        this.target = target;
+        this.status = status;
+        this.permissions = permissions;
+    }
+
     @SuppressWarnings("unused")
     public Relationship() {}
 }
\ No newline at end of file
@@ -2,17 +2,39 @@ package io.icker.factions.api.persistents;
 
 import io.icker.factions.api.events.FactionEvents;
 import io.icker.factions.database.Database;
+import io.icker.factions.database.DirtyTracker;
 import io.icker.factions.database.Field;
+import io.icker.factions.database.Journal;
 import io.icker.factions.database.Name;
+import io.icker.factions.util.DecisionCache;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Only durable users, the ones in a faction or with settings that differ from the defaults, are kept in
+ * the store and saved. Everyone else is transient: connected players are pinned until they leave, the
+ * rest live in a small access ordered cache and are simply created again when they fall out of it.
+ */
 @Name("User")
 public class User {
-    private static final HashMap<UUID, User> STORE = Database.load(User.class, User::getID);
+    private static final int TRANSIENT_LIMIT = 512;
+
+    private static HashMap<UUID, User> STORE = new HashMap<UUID, User>();
+    private static final HashMap<UUID, User> CONNECTED = new HashMap<UUID, User>();
+    private static final LinkedHashMap<UUID, User> TRANSIENT = new LinkedHashMap<UUID, User>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, User> eldest) {
+            return size() > TRANSIENT_LIMIT;
+        }
+    };
+    private static final DirtyTracker<User> DIRTY = new DirtyTracker<>();
+    private static final HashMap<UUID, LinkedHashSet<User>> MEMBERS = new HashMap<UUID, LinkedHashSet<User>>();
+    private static final HashMap<UUID, LinkedHashSet<User>> ONLINE = new HashMap<UUID, LinkedHashSet<User>>();
 
     public enum ChatMode {
         FOCUS,
@@ -58,6 +80,8 @@ public class User {
     public String language = "en_us";
 
     private User spoof;
+    private boolean online = false;
+    private DecisionCache decisions;
 
     public User(UUID id) {
         this.id = id;
@@ -70,23 +94,64 @@ public class User {
         return id.toString();
     }
 
+    public static void load() {
+        STORE = Database.load(User.class, User::getID);
+        DIRTY.clear();
+        CONNECTED.clear();
+        TRANSIENT.clear();
+
+        // records of users that were kept before only transient ones existed are dropped on the next save
+        List<User> defaults = STORE.values().stream().filter(user -> !user.isDurable()).toList();
+        for (User user : defaults) {
+            STORE.remove(user.id);
+            DIRTY.markRemoved(user);
+        }
+
+        MEMBERS.clear();
+        ONLINE.clear();
+        for (User user : STORE.values()) {
+            if (user.factionID != null) MEMBERS.computeIfAbsent(user.factionID, id -> new LinkedHashSet<User>()).add(user);
+        }
+    }
+
+    /**
+     * @return The user, a transient one that is not saved until it becomes durable if there is none
+     */
     @NotNull
     public static User get(UUID id) {
-        if (!STORE.containsKey(id)) {
-            User.add(new User(id));
+        User user = STORE.get(id);
+        if (user != null) return user;
+
+        user = CONNECTED.get(id);
+        if (user != null) return user;
+
+        user = TRANSIENT.get(id);
+        if (user == null) {
+            user = new User(id);
+            TRANSIENT.put(id, user);
         }
-        return STORE.get(id);
+        return user;
     }
 
     public static List<User> getByFaction(UUID factionID) {
-        return STORE.values()
-                .stream()
-                .filter(m -> m.isInFaction() && m.factionID.equals(factionID))
-                .toList();
+        return List.copyOf(MEMBERS.getOrDefault(factionID, new LinkedHashSet<User>()));
+    }
+
+    public static int countByFaction(UUID factionID) {
+        LinkedHashSet<User> members = MEMBERS.get(factionID);
+        return members == null ? 0 : members.size();
+    }
+
+    /**
+     * @return The members of the faction that are connected right now
+     */
+    public static List<User> getOnlineByFaction(UUID factionID) {
+        return List.copyOf(ONLINE.getOrDefault(factionID, new LinkedHashSet<User>()));
     }
 
     public static void add(User user) {
         STORE.put(user.id, user);
+        DIRTY.mark(user);
     }
 
     public UUID getID() {
@@ -97,6 +162,13 @@ public class User {
         return factionID != null;
     }
 
+    /**
+     * @return Whether the user has anything worth saving
+     */
+    public boolean isDurable() {
+        return factionID != null || rank != null || radar || chat != ChatMode.GLOBAL || sounds != SoundMode.ALL;
+    }
+
     private String getEnumName(Enum<?> value) {
         return Arrays
                 .stream(value.name().split("_"))
@@ -131,37 +203,190 @@ public class User {
         this.spoof = user;
     }
 
+    public DecisionCache getDecisions() {
+        if (decisions == null) decisions = new DecisionCache();
+        return decisions;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    /**
+     * Kept current from the connection events, so the online members of a faction can be found without asking the player manager about each member
+     */
+    public void setOnline(boolean online) {
+        if (this.online == online) return;
+
+        unindex();
+        this.online = online;
+        index();
+
+        if (STORE.get(id) == this) return;
+        if (online) {
+            TRANSIENT.remove(id);
+            CONNECTED.put(id, this);
+        } else {
+            CONNECTED.remove(id);
+            TRANSIENT.put(id, this);
+        }
+    }
+
     public void joinFaction(UUID factionID, Rank rank) {
-        this.factionID = factionID;
+        setFactionID(factionID);
         this.rank = rank;
-        FactionEvents.MEMBER_JOIN.invoker().onMemberJoin(Faction.get(factionID), this);
+        markDirty();
+        Journal.append(Journal.MEMBER_JOIN, out -> {
+            Journal.writeUUID(out, id);
+            Journal.writeUUID(out, factionID);
+            out.writeByte(rank.ordinal());
+        });
+        Faction faction = Faction.get(factionID);
+        FactionEvents.MEMBER_JOIN.invoker().onMemberJoin(faction, this);
+        if (faction != null) faction.updateOverclaimed();
     }
 
     public void leaveFaction() {
         UUID oldFactionID = factionID;
-        factionID = null;
+        setFactionID(null);
         rank = null;
-        FactionEvents.MEMBER_LEAVE.invoker().onMemberLeave(Faction.get(oldFactionID), this);
+        markDirty();
+        Journal.append(Journal.MEMBER_LEAVE, out -> Journal.writeUUID(out, id));
+        Faction oldFaction = Faction.get(oldFactionID);
+        FactionEvents.MEMBER_LEAVE.invoker().onMemberLeave(oldFaction, this);
+        if (oldFaction != null) oldFaction.updateOverclaimed();
     }
 
+    public void setRank(Rank rank) {
+        this.rank = rank;
+        DecisionCache.invalidateAll();
+        markDirty();
+        Journal.append(Journal.MEMBER_RANK, out -> {
+            Journal.writeUUID(out, id);
+            out.writeByte(rank.ordinal());
+        });
+    }
+
+    private void setFactionID(UUID factionID) {
+        unindex();
+        this.factionID = factionID;
+        index();
+        DecisionCache.invalidateAll();
+        // member counts are part of the faction summaries
+        Faction.markSnapshotStale();
+    }
+
+    private void index() {
+        if (factionID == null) return;
+
+        MEMBERS.computeIfAbsent(factionID, id -> new LinkedHashSet<User>()).add(this);
+        if (online) ONLINE.computeIfAbsent(factionID, id -> new LinkedHashSet<User>()).add(this);
+    }
+
+    private void unindex() {
+        if (factionID == null) return;
+
+        remove(MEMBERS, factionID, this);
+        remove(ONLINE, factionID, this);
+    }
+
+    private static void remove(HashMap<UUID, LinkedHashSet<User>> index, UUID factionID, User user) {
+        LinkedHashSet<User> users = index.get(factionID);
+        if (users != null && users.remove(user) && users.isEmpty()) index.remove(factionID);
+    }
+
+    /**
+     * Flags the user as changed so it is written on the next save, moving it into the store once it becomes
+     * durable and back out of it once it no longer is
+     */
+    public void markDirty() {
+        if (isDurable()) {
+            if (STORE.get(id) != this) {
+                CONNECTED.remove(id);
+                TRANSIENT.remove(id);
+                STORE.put(id, this);
+            }
+            DIRTY.mark(this);
+        } else if (STORE.remove(id, this)) {
+            DIRTY.markRemoved(this);
+            if (online) {
+                CONNECTED.put(id, this);
+            } else {
+                TRANSIENT.put(id, this);
+            }
+        }
+    }
+
+    public boolean isDirty() {
+        return DIRTY.isDirty(this);
+    }
+
+    /**
+     * @return Every durable user
+     */
     public static Collection<User> all() {
         return STORE.values();
     }
 
+
+    /**
+     * @return The IDs of every faction that has an owner
+     */
+    static Set<UUID> getOwnedFactionIDs() {
+        return STORE.values()
+            .parallelStream()
+            .filter(user -> user.rank == Rank.OWNER && user.factionID != null)
+            .map(user -> user.factionID)
+            .collect(Collectors.toSet());
+    }
+
     public static void audit() {
-        STORE.values().forEach((user) -> {
-            if (Faction.get(user.factionID) == null) {
-                user.factionID = null;
+        // find the broken users in parallel, then fix them on this thread since the dirty tracker is not thread safe
+        List<User> broken = STORE.values()
+            .parallelStream()
+            .filter(user -> (user.factionID != null && Faction.get(user.factionID) == null) || (user.factionID == null && user.rank != null))
+            .toList();
+
+        for (User user : broken) {
+            if (user.factionID != null && Faction.get(user.factionID) == null) {
+                user.setFactionID(null);
             }
 
-            if (!user.isInFaction()) {
+            if (!user.isInFaction() && user.rank != null) {
                 user.rank = null;
             }
-        });
+            user.markDirty();
+        }
     }
 
-    public static void save() {
-        Database.save(User.class, STORE.values().stream().toList());
+    /**
+     * Applies a {@link Journal} record written by {@link #joinFaction}, {@link #leaveFaction} or {@link #setRank}
+     * without firing any events
+     */
+    public static void replay(byte type, DataInputStream in) throws IOException {
+        User user = get(Journal.readUUID(in));
+
+        if (type == Journal.MEMBER_JOIN) {
+            user.setFactionID(Journal.readUUID(in));
+            user.rank = Rank.values()[in.readByte()];
+        } else if (type == Journal.MEMBER_RANK) {
+            user.rank = Rank.values()[in.readByte()];
+            DecisionCache.invalidateAll();
+        } else {
+            user.setFactionID(null);
+            user.rank = null;
+        }
+        user.markDirty();
+    }
+
+    public static boolean save() {
+        if (!DIRTY.isDirty()) return true;
+
+        if (Database.save(User.class, User::getID, STORE.values(), DIRTY)) {
+            DIRTY.clear();
+            return true;
+        }
+        return false;
     }
 
 }
\ No newline at end of file
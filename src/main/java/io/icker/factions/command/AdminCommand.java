@@ -11,6 +11,7 @@ import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.User;
 import io.icker.factions.util.Command;
+import io.icker.factions.util.DecisionCache;
 import io.icker.factions.util.Message;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
@@ -122,17 +123,36 @@ public class AdminCommand implements Command {
         ServerCommandSource source = context.getSource();
         ServerPlayerEntity player = source.getPlayer();
 
+        int repaired = Claim.verify();
         Claim.audit();
         Faction.audit();
         User.audit();
+        Faction.refreshOverclaimed();
 
         if (player != null) {
+            if (repaired > 0) {
+                new Message("Repaired %d inconsistencies in the claim index", repaired).send(player, false);
+            }
             new Message("Successful audit (it is recommended to run this command at least twice to fix possible side effects)").send(player, false);
         }
 
         return 1;
     }
 
+    private int stats(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerPlayerEntity player = context.getSource().getPlayer();
+
+        new Message("Claim protection checks answered from cache")
+                .filler("·")
+                .add(
+                    new Message("%.1f%% of %d", DecisionCache.getHitRate() * 100, DecisionCache.getLookups())
+                        .format(Formatting.YELLOW)
+                )
+                .send(player, false);
+
+        return 1;
+    }
+
     public LiteralCommandNode<ServerCommandSource> getNode() {
         return CommandManager
             .literal("admin")
@@ -173,6 +193,11 @@ public class AdminCommand implements Command {
                 .requires(Requires.hasPerms("factions.admin.audit", FactionsMod.CONFIG.REQUIRED_BYPASS_LEVEL))
                 .executes(this::audit)
             )
+            .then(
+                CommandManager.literal("stats")
+                .requires(Requires.hasPerms("factions.admin.stats", FactionsMod.CONFIG.REQUIRED_BYPASS_LEVEL))
+                .executes(this::stats)
+            )
             .build();
     }
 }
@@ -72,43 +72,47 @@ public class ClaimCommand implements Command {
 
         Faction faction = Command.getUser(player).getFaction();
         String dimension = world.getRegistryKey().getValue().toString();
-        ArrayList<ChunkPos> chunks = new ArrayList<ChunkPos>();
+        ChunkPos center = new ChunkPos(player.getBlockPos());
+        ArrayList<Claim> claims = new ArrayList<Claim>();
+
+        for (Claim existingClaim : Claim.query(dimension, center.x - size + 1, center.z - size + 1, center.x + size - 1, center.z + size - 1)) {
+            if (size == 1) {
+                String owner = existingClaim.getFaction().getID() == faction.getID() ? "Your" : "Another";
+                new Message(owner + " faction already owns this chunk").fail().send(player, false);
+                return 0;
+            } else if (existingClaim.getFaction().getID() != faction.getID()) {
+                new Message("Another faction already owns a chunk").fail().send(player, false);
+                return 0;
+            }
+        }
 
         for (int x = -size + 1; x < size; x++) {
             for (int y = -size + 1; y < size; y++) {
-                ChunkPos chunkPos = world.getChunk(player.getBlockPos().add(x * 16, 0, y * 16)).getPos();
-                Claim existingClaim = Claim.get(chunkPos.x, chunkPos.z, dimension);
-
-                if (existingClaim != null) {
-                    if (size == 1) {
-                        String owner = existingClaim.getFaction().getID() == faction.getID() ? "Your" : "Another";
-                        new Message(owner + " faction already owns this chunk").fail().send(player, false);
-                        return 0;
-                    } else if (existingClaim.getFaction().getID() != faction.getID()) {
-                        new Message("Another faction already owns a chunk").fail().send(player, false);
-                        return 0;
-                    }
-                }
-
-                chunks.add(chunkPos);
+                claims.add(new Claim(center.x + x, center.z + y, dimension, faction.getID()));
             }
         }
 
-        chunks.forEach(chunk -> faction.addClaim(chunk.x, chunk.z, dimension));
+        // a single claim still fires ADD, so listeners that only know about single claims keep seeing command claims
+        if (claims.size() == 1) {
+            Claim.add(claims.get(0));
+        } else {
+            Claim.addAll(claims);
+        }
+
         if (size == 1) {
             new Message(
                 "Chunk (%d, %d) claimed by %s",
-                chunks.get(0).x,
-                chunks.get(0).z,
+                claims.get(0).x,
+                claims.get(0).z,
                 player.getName().getString()
             ).send(faction);
         } else {
             new Message(
                 "Chunks (%d, %d) to (%d, %d) claimed by %s",
-                chunks.get(0).x,
-                chunks.get(0).z,
-                chunks.get(0).x + size - 1,
-                chunks.get(0).z + size - 1,
+                claims.get(0).x,
+                claims.get(0).z,
+                claims.get(0).x + size - 1,
+                claims.get(0).z + size - 1,
                 player.getName().getString()
             ).send(faction);
         }
@@ -120,8 +124,8 @@ public class ClaimCommand implements Command {
         ServerPlayerEntity player = context.getSource().getPlayer();
         Faction faction = Command.getUser(player).getFaction();
 
-        int requiredPower = (faction.getClaims().size() + 1) * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT;
-        int maxPower = faction.getUsers().size() * FactionsMod.CONFIG.POWER.MEMBER + FactionsMod.CONFIG.POWER.BASE;
+        int requiredPower = (faction.getClaimCount() + 1) * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT;
+        int maxPower = faction.getUserCount() * FactionsMod.CONFIG.POWER.MEMBER + FactionsMod.CONFIG.POWER.BASE;
 
         if (maxPower < requiredPower) {
             new Message("Not enough faction power to claim chunk").fail().send(player, false);
@@ -136,8 +140,8 @@ public class ClaimCommand implements Command {
         ServerPlayerEntity player = context.getSource().getPlayer();
         Faction faction = Command.getUser(player).getFaction();
 
-        int requiredPower = (faction.getClaims().size() + 1) * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT;
-        int maxPower = faction.getUsers().size() * FactionsMod.CONFIG.POWER.MEMBER + FactionsMod.CONFIG.POWER.BASE;
+        int requiredPower = (faction.getClaimCount() + 1) * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT;
+        int maxPower = faction.getUserCount() * FactionsMod.CONFIG.POWER.MEMBER + FactionsMod.CONFIG.POWER.BASE;
 
         if (maxPower < requiredPower) {
             new Message("Not enough faction power to claim chunks").fail().send(player, false);
@@ -196,16 +200,19 @@ public class ClaimCommand implements Command {
         User user = Command.getUser(player);
         Faction faction = user.getFaction();
 
-        for (int x = -size + 1; x < size; x++) {
-            for (int y = -size + 1; y < size; y++) {
-                ChunkPos chunkPos = world.getChunk(player.getBlockPos().add(x * 16, 0, y * 16)).getPos();
-                Claim existingClaim = Claim.get(chunkPos.x, chunkPos.z, dimension);
+        ChunkPos center = new ChunkPos(player.getBlockPos());
+        List<Claim> removed = Claim.query(dimension, center.x - size + 1, center.z - size + 1, center.x + size - 1, center.z + size - 1)
+            .stream()
+            .filter(existingClaim -> user.bypass || existingClaim.getFaction().getID() == faction.getID())
+            .toList();
 
-                if (existingClaim != null && (user.bypass || existingClaim.getFaction().getID() == faction.getID())) existingClaim.remove();
-            }
+        if (removed.size() == 1) {
+            removed.get(0).remove();
+        } else {
+            Claim.removeAll(removed);
         }
 
-        ChunkPos chunkPos = world.getChunk(player.getBlockPos().add((-size + 1) * 16, 0, (-size + 1) * 16)).getPos();
+        ChunkPos chunkPos = new ChunkPos(center.x - size + 1, center.z - size + 1);
         new Message(
             "Claims (%d, %d) to (%d, %d) removed by %s ",
             chunkPos.x,
@@ -287,15 +294,15 @@ public class ClaimCommand implements Command {
                         .send(player, false);
                     return 0;
                 }
-                case LEADER -> claim.accessLevel = User.Rank.OWNER;
-                case COMMANDER -> claim.accessLevel = User.Rank.LEADER;
-                case MEMBER -> claim.accessLevel = User.Rank.COMMANDER;
+                case LEADER -> claim.setAccessLevel(User.Rank.OWNER);
+                case COMMANDER -> claim.setAccessLevel(User.Rank.LEADER);
+                case MEMBER -> claim.setAccessLevel(User.Rank.COMMANDER);
             }
         } else {
             switch (claim.accessLevel) {
-                case OWNER -> claim.accessLevel = User.Rank.LEADER;
-                case LEADER -> claim.accessLevel = User.Rank.COMMANDER;
-                case COMMANDER -> claim.accessLevel = User.Rank.MEMBER;
+                case OWNER -> claim.setAccessLevel(User.Rank.LEADER);
+                case LEADER -> claim.setAccessLevel(User.Rank.COMMANDER);
+                case COMMANDER -> claim.setAccessLevel(User.Rank.MEMBER);
                 case MEMBER -> {
                     new Message("Cannot decrease access level as it is already at its minimum.")
                         .fail()
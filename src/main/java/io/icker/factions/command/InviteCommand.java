@@ -64,6 +64,7 @@ public class InviteCommand implements Command {
         }
 
         faction.invites.add(target.getUuid());
+        faction.markDirty();
 
         new Message(target.getName().getString() + " has been invited")
                 .send(faction);
@@ -82,6 +83,7 @@ public class InviteCommand implements Command {
 
         Faction faction = Command.getUser(player).getFaction();
         faction.invites.remove(target.getUuid());
+        faction.markDirty();
 
         new Message(target.getName().getString() + " is no longer invited to your faction").send(player, false);
         return 1;
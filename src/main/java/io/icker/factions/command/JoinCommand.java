@@ -33,12 +33,15 @@ public class JoinCommand implements Command {
             return 0;
         }
 
-        if (FactionsMod.CONFIG.MAX_FACTION_SIZE != -1 && faction.getUsers().size() >= FactionsMod.CONFIG.MAX_FACTION_SIZE) {
+        if (FactionsMod.CONFIG.MAX_FACTION_SIZE != -1 && faction.getUserCount() >= FactionsMod.CONFIG.MAX_FACTION_SIZE) {
             new Message("Cannot join faction as it is currently full").fail().send(player, false);
             return 0;
         }
 
-        if (invited) faction.invites.remove(player.getUuid());
+        if (invited) {
+            faction.invites.remove(player.getUuid());
+            faction.markDirty();
+        }
         Command.getUser(player).joinFaction(faction.getID(), User.Rank.MEMBER);
         source.getServer().getPlayerManager().sendCommandTree(player);
 
@@ -28,7 +28,7 @@ public class LeaveCommand implements Command {
 
         context.getSource().getServer().getPlayerManager().sendCommandTree(player);
 
-        if (faction.getUsers().size() == 0) {
+        if (faction.getUserCount() == 0) {
             faction.remove();
         } else {
             faction.adjustPower(-FactionsMod.CONFIG.POWER.MEMBER);
@@ -24,6 +24,10 @@ public class MapCommand implements Command{
         ChunkPos chunkPos = world.getChunk(player.getBlockPos()).getPos();
         String dimension = world.getRegistryKey().getValue().toString();
 
+        // Fetch the whole grid at once, then look cells up by offset
+        Claim[][] claims = new Claim[10][11];
+        Claim.query(dimension, chunkPos.x - 5, chunkPos.z - 4, chunkPos.x + 5, chunkPos.z + 5, claim -> claims[claim.z - chunkPos.z + 4][claim.x - chunkPos.x + 5] = claim);
+
         // Print the header of the faction map.
         new Message(Formatting.DARK_GRAY + "──┤" + Formatting.GREEN +
                 " Faction Map" + Formatting.DARK_GRAY + "├──")
@@ -32,7 +36,7 @@ public class MapCommand implements Command{
         for (int z = -4; z <= 5; z++) { // Rows (10)
             Message row = new Message("");
             for (int x = -5; x <= 5; x++) { // Columns (11)
-                Claim claim = Claim.get(chunkPos.x + x, chunkPos.z + z, dimension);
+                Claim claim = claims[z + 4][x + 5];
                 if (x == 0 && z == 0) { // Check if middle (your chunk)
                     if (claim == null) {
                         row.add(new Message("⏺").format(Formatting.DARK_GRAY).hover("<You> <Wilderness>"));
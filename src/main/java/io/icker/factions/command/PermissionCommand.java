@@ -33,6 +33,9 @@ public class PermissionCommand implements Command {
         }
 
         Relationship rel = sourceFaction.getRelationship(targetFaction.getID());
+        if (rel == Relationship.NEUTRAL) {
+            rel = new Relationship(targetFaction.getID(), Relationship.Status.NEUTRAL);
+        }
 
         Permissions permission;
 
@@ -96,11 +99,7 @@ public class PermissionCommand implements Command {
             return 0;
         }
 
-        if (add) {
-            faction.guest_permissions.add(permission);
-        } else {
-            faction.guest_permissions.remove(permission);
-        }
+        faction.setGuestPermission(permission, add);
 
         new Message("Successfully changed permissions").send(player, false);
         return 1;
@@ -34,9 +34,9 @@ public class RankCommand implements Command {
             if (users.getID().equals(target.getUuid())) {
 
                 switch (users.rank) {
-                    case GUEST -> users.rank = User.Rank.MEMBER;
-                    case MEMBER -> users.rank = User.Rank.COMMANDER;
-                    case COMMANDER -> users.rank = User.Rank.LEADER;
+                    case GUEST -> users.setRank(User.Rank.MEMBER);
+                    case MEMBER -> users.setRank(User.Rank.COMMANDER);
+                    case COMMANDER -> users.setRank(User.Rank.LEADER);
                     case LEADER -> {
                         new Message("You cannot promote a Leader to Owner").format(Formatting.RED).send(player, false);
                         return 0;
@@ -81,15 +81,15 @@ public class RankCommand implements Command {
                         new Message("You cannot demote a Guest").format(Formatting.RED).send(player, false);
                         return 0;
                     }
-                    case MEMBER -> user.rank = User.Rank.GUEST;
-                    case COMMANDER -> user.rank = User.Rank.MEMBER;
+                    case MEMBER -> user.setRank(User.Rank.GUEST);
+                    case COMMANDER -> user.setRank(User.Rank.MEMBER);
                     case LEADER -> {
                         if (Command.getUser(player).rank == User.Rank.LEADER) {
                             new Message("You cannot demote a fellow Co-Owner").format(Formatting.RED).send(player, false);
                             return 0;
                         }
 
-                        user.rank = User.Rank.COMMANDER;
+                        user.setRank(User.Rank.COMMANDER);
                     }
                     case OWNER -> {
                         new Message("You cannot demote the Owner").format(Formatting.RED).send(player, false);
@@ -125,8 +125,8 @@ public class RankCommand implements Command {
         User targetUser = User.get(target.getUuid());
         UUID targetFaction = targetUser.isInFaction() ? targetUser.getFaction().getID() : null;
         if (Command.getUser(player).getFaction().getID().equals(targetFaction)) {
-            targetUser.rank = User.Rank.OWNER;
-            Command.getUser(player).rank = User.Rank.LEADER;
+            targetUser.setRank(User.Rank.OWNER);
+            Command.getUser(player).setRank(User.Rank.LEADER);
 
             context.getSource().getServer().getPlayerManager().sendCommandTree(player);
             context.getSource().getServer().getPlayerManager().sendCommandTree(target);
@@ -16,7 +16,8 @@ public class SettingsCommand implements Command{
     private int setChat(CommandContext<ServerCommandSource> context, User.ChatMode option) throws CommandSyntaxException {
         ServerPlayerEntity player = context.getSource().getPlayer();
         User user = User.get(player.getUuid());
-        user.chat = option;   
+        user.chat = option;
+        user.markDirty();
 
         new Message("Successfully set your chat preference")
             .filler("·")
@@ -33,6 +34,7 @@ public class SettingsCommand implements Command{
         ServerPlayerEntity player = context.getSource().getPlayer();
         User user = User.get(player.getUuid());
         user.sounds = option;
+        user.markDirty();
 
         new Message("Successfully set your sound preference")
             .filler("·")
@@ -52,6 +54,7 @@ public class SettingsCommand implements Command{
         User config = User.get(player.getUuid());
         boolean radar = !config.radar;
         config.radar = radar;
+        config.markDirty();
 
         new Message("Successfully toggled claim radar")
             .filler("·")
@@ -85,6 +85,9 @@ public class Config {
     @SerializedName("claimProtections")
     public boolean CLAIM_PROTECTION = true;
 
+    @SerializedName("database")
+    public DatabaseConfig DATABASE = new DatabaseConfig();
+
     public static class DisplayConfig {
         @SerializedName("factionNameMaxLength")
         public int NAME_MAX_LENGTH = -1;
@@ -102,6 +105,24 @@ public class Config {
         public boolean POWER_MESSAGE = true;
     }
 
+    public static class DatabaseConfig {
+        public enum Backend {
+            @SerializedName("nbt")
+            NBT,
+            @SerializedName("sqlite")
+            SQLITE
+        }
+
+        @SerializedName("backend")
+        public Backend BACKEND = Backend.NBT;
+
+        @SerializedName("asyncSaving")
+        public boolean ASYNC_SAVING = true;
+
+        @SerializedName("journal")
+        public boolean JOURNAL = true;
+    }
+
     public static class RelationshipConfig {
         @SerializedName("allyOverridesPermissions")
         public boolean ALLY_OVERRIDES_PERMISSIONS = true;
@@ -36,7 +36,7 @@ public class FactionsManager {
     }
 
     private static void factionModified(Faction faction) {
-        ServerPlayerEntity[] players = faction.getUsers()
+        ServerPlayerEntity[] players = faction.getOnlineUsers()
             .stream()
             .map(user -> playerManager.getPlayer(user.getID()))
             .filter(player -> player != null)
@@ -1,13 +1,18 @@
 package io.icker.factions.core;
 
 import io.icker.factions.FactionsMod;
+import io.icker.factions.api.events.ClaimEvents;
+import io.icker.factions.api.events.FactionEvents;
 import io.icker.factions.api.events.PlayerEvents;
 import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.Relationship.Permissions;
 import io.icker.factions.api.persistents.User;
+import io.icker.factions.database.LongObjectMap;
 import io.icker.factions.mixin.BucketItemMixin;
 import io.icker.factions.mixin.ItemMixin;
+import io.icker.factions.util.DecisionCache;
+import io.icker.factions.util.WorldUtils;
 import net.fabricmc.fabric.api.event.player.AttackEntityCallback;
 import net.fabricmc.fabric.api.event.player.PlayerBlockBreakEvents;
 import net.fabricmc.fabric.api.event.player.UseBlockCallback;
@@ -29,10 +34,14 @@ import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.hit.EntityHitResult;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.world.RaycastContext;
 import net.minecraft.world.RaycastContext.FluidHandling;
 import net.minecraft.world.World;
 
+import java.util.Collection;
+import java.util.List;
+
 public class InteractionManager {
     public static void register() {
         PlayerBlockBreakEvents.BEFORE.register(InteractionManager::onBreakBlock);
@@ -43,6 +52,16 @@ public class InteractionManager {
         PlayerEvents.USE_ENTITY.register(InteractionManager::onUseEntity);
         PlayerEvents.USE_INVENTORY.register(InteractionManager::onUseInventory);
         PlayerEvents.PLACE_BLOCK.register(InteractionManager::onPlaceBlock);
+
+        ClaimEvents.ADD.register(claim -> DecisionCache.invalidateAll());
+        ClaimEvents.THE_OTHER_ADD.register(claim -> DecisionCache.invalidateAll());
+        ClaimEvents.ADD_ALL.register(claims -> DecisionCache.invalidateAll());
+        ClaimEvents.REMOVE.register((x, z, level, faction) -> DecisionCache.invalidateAll());
+        ClaimEvents.REMOVE_ALL.register(claims -> DecisionCache.invalidateAll());
+        FactionEvents.MEMBER_JOIN.register((faction, user) -> DecisionCache.invalidateAll());
+        FactionEvents.MEMBER_LEAVE.register((faction, user) -> DecisionCache.invalidateAll());
+        FactionEvents.DISBAND.register(faction -> DecisionCache.invalidateAll());
+        FactionEvents.OVERCLAIM_CHANGE.register((faction, overclaimed) -> DecisionCache.invalidateAll());
     }
 
     private static boolean onBreakBlock(World world, PlayerEntity player, BlockPos pos, BlockState state, BlockEntity blockEntity) {
@@ -181,47 +200,130 @@ public class InteractionManager {
             return ActionResult.PASS;
         }
 
-        String dimension = world.getRegistryKey().getValue().toString();
-        ChunkPos chunkPosition = world.getChunk(position).getPos();
+        // resolved straight from the block coordinates, asking the world for the chunk could load or generate it
+        int level = WorldUtils.getWorldID(world);
+        int x = ChunkSectionPos.getSectionCoord(position.getX());
+        int z = ChunkSectionPos.getSectionCoord(position.getZ());
+        return checkPermissions(user, level, x, z, permission);
+    }
 
-        Claim claim = Claim.get(chunkPosition.x, chunkPosition.z, dimension);
-        if (claim == null) return ActionResult.PASS;
+    /**
+     * Decides for a chunk resolved from the world by {@link #checkPermissions(PlayerEntity, BlockPos, World, Permissions)},
+     * from the user's decision cache where it can
+     * @param level The dimension as interned by {@link WorldUtils#getID}
+     */
+    static ActionResult checkPermissions(User user, int level, int x, int z, Permissions permission) {
+        DecisionCache decisions = user.getDecisions();
+        ActionResult decision = decisions.get(level, x, z, permission);
+        if (decision == null) {
+            decision = decide(user, Claim.get(x, z, level), permission);
+            decisions.put(level, x, z, permission, decision);
+        }
+        return decision;
+    }
 
-        Faction claimFaction = claim.getFaction();
+    /**
+     * Removes every position a change starting at the source may not reach, looking each distinct chunk up only
+     * once. Meant for explosions, which can touch thousands of blocks at once.
+     */
+    public static void filterProtected(World world, BlockPos source, List<BlockPos> targets) {
+        if (!FactionsMod.CONFIG.CLAIM_PROTECTION || targets.isEmpty()) return;
 
-        if (claimFaction.getClaims().size() * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT > claimFaction.getPower()) {
-            return ActionResult.PASS;
+        Protection protection = new Protection(world, source);
+        targets.removeIf(protection::isProtected);
+    }
+
+    /**
+     * @return Whether a change starting at the source may not reach one of the positions, looking each distinct chunk up only once
+     */
+    public static boolean isAnyProtected(World world, BlockPos source, Collection<BlockPos> targets) {
+        if (!FactionsMod.CONFIG.CLAIM_PROTECTION || targets.isEmpty()) return false;
+
+        Protection protection = new Protection(world, source);
+        for (BlockPos target : targets) {
+            if (protection.isProtected(target)) return true;
         }
+        return false;
+    }
 
-        if (!user.isInFaction()) {
-            return ActionResult.FAIL;
+    /**
+     * Whether a change spreading one block at a time, like flowing fluids, may not cross from the source into the
+     * target. Both being in the same chunk is by far the most common case and needs no lookup at all.
+     */
+    public static boolean isProtected(World world, BlockPos source, BlockPos target) {
+        if (!FactionsMod.CONFIG.CLAIM_PROTECTION) return false;
+        if (ChunkPos.toLong(ChunkSectionPos.getSectionCoord(source.getX()), ChunkSectionPos.getSectionCoord(source.getZ()))
+            == ChunkPos.toLong(ChunkSectionPos.getSectionCoord(target.getX()), ChunkSectionPos.getSectionCoord(target.getZ()))) return false;
+
+        return new Protection(world, source).isProtected(target);
+    }
+
+    /**
+     * Decides for one source which chunks are protected from it, remembering the answer for every chunk it was asked about.
+     * Chunks of the faction the source is claimed by are never protected, those of other factions only if they do not grant
+     * that faction {@link Permissions#BREAK_BLOCKS}.
+     */
+    private static class Protection {
+        final int level;
+        final Faction sourceFaction;
+        final LongObjectMap<Boolean> chunks = new LongObjectMap<Boolean>();
+        long lastChunk;
+        boolean lastProtected = false;
+
+        Protection(World world, BlockPos source) {
+            int x = ChunkSectionPos.getSectionCoord(source.getX());
+            int z = ChunkSectionPos.getSectionCoord(source.getZ());
+            level = WorldUtils.getWorldID(world);
+            lastChunk = ChunkPos.toLong(x, z);
+
+            Claim claim = Claim.get(x, z, level);
+            sourceFaction = claim == null ? null : claim.getFaction();
         }
 
-        Faction userFaction = user.getFaction();
+        boolean isProtected(BlockPos target) {
+            int x = ChunkSectionPos.getSectionCoord(target.getX());
+            int z = ChunkSectionPos.getSectionCoord(target.getZ());
+            long chunk = ChunkPos.toLong(x, z);
+            if (chunk == lastChunk) return lastProtected;
 
-        if (claimFaction == userFaction && (getRankLevel(claim.accessLevel) <= getRankLevel(user.rank) || (user.rank == User.Rank.GUEST && claimFaction.guest_permissions.contains(permission) && claim.accessLevel == User.Rank.MEMBER))) {
-            return ActionResult.SUCCESS;
+            Boolean known = chunks.get(chunk);
+            if (known == null) {
+                known = decide(Claim.get(x, z, level));
+                chunks.put(chunk, known);
+            }
+
+            lastChunk = chunk;
+            lastProtected = known;
+            return known;
         }
 
-        if (FactionsMod.CONFIG.RELATIONSHIPS.ALLY_OVERRIDES_PERMISSIONS && claimFaction.isMutualAllies(userFaction.getID()) && claim.accessLevel == User.Rank.MEMBER) {
-            return ActionResult.SUCCESS;
+        private boolean decide(Claim claim) {
+            if (claim == null) return false;
+
+            Faction faction = claim.getFaction();
+            if (faction == null || faction.isOverclaimed() || faction == sourceFaction) return false;
+
+            return sourceFaction == null || !faction.allows(sourceFaction, User.Rank.MEMBER, claim.accessLevel, Permissions.BREAK_BLOCKS);
         }
+    }
 
-        if (claimFaction.getRelationship(userFaction.getID()).permissions.contains(permission) && claim.accessLevel == User.Rank.MEMBER) {
-            return ActionResult.SUCCESS;
+    private static ActionResult decide(User user, Claim claim, Permissions permission) {
+        if (claim == null) return ActionResult.PASS;
+
+        Faction claimFaction = claim.getFaction();
+
+        if (claimFaction.isOverclaimed()) {
+            return ActionResult.PASS;
         }
 
-        return ActionResult.FAIL;
-    }
+        if (!user.isInFaction()) {
+            return ActionResult.FAIL;
+        }
 
-    private static int getRankLevel(User.Rank rank) {
-        switch (rank) {
-            case OWNER -> { return 3; }
-            case LEADER -> { return 2; }
-            case COMMANDER -> { return 1; }
-            case MEMBER -> { return 0; }
-            case GUEST -> { return -1; }
-            default -> { return -2; }
+        if (claimFaction.allows(user.getFaction(), user.rank, claim.accessLevel, permission)) {
+            return ActionResult.SUCCESS;
         }
+
+        return ActionResult.FAIL;
     }
 }
@@ -1,31 +1,124 @@
 package io.icker.factions.core;
 
+import io.icker.factions.FactionsMod;
 import io.icker.factions.api.events.MiscEvents;
 import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.User;
+import io.icker.factions.database.Database;
+import io.icker.factions.database.Journal;
+import io.icker.factions.database.SaveQueue;
 import io.icker.factions.util.Message;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
 
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public class ServerManager {
     public static void register() {
         ServerPlayConnectionEvents.JOIN.register(ServerManager::playerJoin);
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> User.get(handler.getPlayer().getUuid()).setOnline(false));
         MiscEvents.ON_SAVE.register(ServerManager::save);
+        ServerLifecycleEvents.SERVER_STARTING.register(ServerManager::load);
+        ServerLifecycleEvents.SERVER_STARTED.register(ServerManager::audit);
+        ServerTickEvents.END_SERVER_TICK.register(server -> publishSnapshots());
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            SaveQueue.flush();
+            Journal.close();
+            Database.close();
+        });
+    }
+
+    /**
+     * Loads the three stores concurrently, then applies any journaled changes on top of them
+     */
+    private static void load(MinecraftServer server) {
+        long start = System.nanoTime();
+
+        CompletableFuture.allOf(
+            CompletableFuture.runAsync(() -> time("Loaded claim index", Claim::load)),
+            CompletableFuture.runAsync(() -> time("Loaded factions", Faction::load)),
+            CompletableFuture.runAsync(() -> time("Loaded users", User::load))
+        ).join();
+
+        FactionsMod.LOGGER.info("Loaded factions data in {} ms", (System.nanoTime() - start) / 1_000_000);
+        replay(server);
+    }
+
+    /**
+     * Runs once the worlds exist, since claims and homes in dimensions that are gone get removed
+     */
+    private static void audit(MinecraftServer server) {
+        long start = System.nanoTime();
+
+        // factions go first, the other audits drop whatever pointed at a removed faction
+        time("Audited factions", Faction::audit);
+        CompletableFuture<Void> claims = CompletableFuture.runAsync(() -> time("Audited claims", Claim::audit));
+        time("Audited users", User::audit);
+        claims.join();
+        Faction.refreshOverclaimed();
+
+        FactionsMod.LOGGER.info("Audited factions data in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Gives other threads the state the stores ended the tick in
+     */
+    public static void publishSnapshots() {
+        Faction.publishSnapshot();
+        Claim.publishSnapshot();
+    }
+
+    private static void time(String phase, Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        FactionsMod.LOGGER.info("{} in {} ms", phase, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void replay(MinecraftServer server) {
+        int replayed = Journal.replay((type, in) -> {
+            switch (type) {
+                case Journal.CLAIM_ADD, Journal.CLAIM_REMOVE, Journal.CLAIM_ADD_ALL, Journal.CLAIM_REMOVE_ALL, Journal.CLAIM_ACCESS -> Claim.replay(type, in);
+                case Journal.MEMBER_JOIN, Journal.MEMBER_LEAVE, Journal.MEMBER_RANK -> User.replay(type, in);
+                case Journal.RELATIONSHIP_SET, Journal.RELATIONSHIP_REMOVE -> Faction.replay(type, in);
+                default -> FactionsMod.LOGGER.warn("Unknown journal record type {}", type);
+            }
+        });
+
+        if (replayed > 0) {
+            FactionsMod.LOGGER.info("Recovered {} unsaved factions changes from the journal", replayed);
+            save(server);
+        }
     }
 
     private static void save(MinecraftServer server) {
-        Claim.save();
-        Faction.save();
-        User.save();
+        List<File> compacted = Journal.rotate();
+
+        boolean saved = Claim.save();
+        saved &= Faction.save();
+        saved &= User.save();
+
+        if (saved && !compacted.isEmpty()) {
+            // segments can only go once the snapshots covering them are on disk
+            if (FactionsMod.CONFIG.DATABASE.ASYNC_SAVING) {
+                SaveQueue.then(() -> Journal.discard(compacted));
+            } else {
+                Journal.discard(compacted);
+            }
+        }
     }
 
     private static void playerJoin(ServerPlayNetworkHandler handler, PacketSender sender, MinecraftServer server) {
         ServerPlayerEntity player = handler.getPlayer();
         User user = User.get(player.getUuid());
+        user.setOnline(true);
 
         if (user.isInFaction()) {
             Faction faction = user.getFaction();
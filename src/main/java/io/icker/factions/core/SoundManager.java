@@ -2,6 +2,7 @@ package io.icker.factions.core;
 
 import io.icker.factions.api.events.ClaimEvents;
 import io.icker.factions.api.events.FactionEvents;
+import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.User;
 import net.minecraft.entity.player.PlayerEntity;
@@ -9,18 +10,23 @@ import net.minecraft.sound.SoundCategory;
 import net.minecraft.sound.SoundEvent;
 import net.minecraft.sound.SoundEvents;
 
+import java.util.List;
+import java.util.Objects;
+
 public class SoundManager {
 
     public static void register() {
         ClaimEvents.ADD.register(claim -> playFaction(claim.getFaction(), SoundEvents.BLOCK_NOTE_BLOCK_PLING, 2.0F));
         ClaimEvents.REMOVE.register((x, z, level, faction) -> playFaction(faction, SoundEvents.BLOCK_NOTE_BLOCK_PLING, 0.5F));
+        ClaimEvents.ADD_ALL.register(claims -> playFactions(claims, SoundEvents.BLOCK_NOTE_BLOCK_PLING, 2.0F));
+        ClaimEvents.REMOVE_ALL.register(claims -> playFactions(claims, SoundEvents.BLOCK_NOTE_BLOCK_PLING, 0.5F));
         FactionEvents.POWER_CHANGE.register((faction, oldPower) -> playFaction(faction, SoundEvents.BLOCK_NOTE_BLOCK_CHIME, 1F));
         FactionEvents.MEMBER_JOIN.register((faction, user) -> playFaction(faction, SoundEvents.BLOCK_NOTE_BLOCK_BIT, 2.0F));
         FactionEvents.MEMBER_LEAVE.register((faction, user) -> playFaction(faction, SoundEvents.BLOCK_NOTE_BLOCK_BIT, 0.5F));
     }
 
     private static void playFaction(Faction faction, SoundEvent soundEvent, float pitch) {
-        for (User user : faction.getUsers()) {
+        for (User user : faction.getOnlineUsers()) {
             PlayerEntity player = FactionsManager.playerManager.getPlayer(user.getID());
             if (player != null && (user.sounds == User.SoundMode.ALL || user.sounds == User.SoundMode.FACTION)) {
                 player.playSound(soundEvent, SoundCategory.PLAYERS, 0.2F, pitch);
@@ -28,6 +34,17 @@ public class SoundManager {
         }
     }
 
+    /**
+     * Plays the sound once to every faction that owns one of the claims
+     */
+    private static void playFactions(List<Claim> claims, SoundEvent soundEvent, float pitch) {
+        claims.stream()
+            .map(Claim::getFaction)
+            .filter(Objects::nonNull)
+            .distinct()
+            .forEach(faction -> playFaction(faction, soundEvent, pitch));
+    }
+
     public static void warningSound(PlayerEntity player) {
         User user = User.get(player.getUuid());
         if (user.sounds == User.SoundMode.ALL || user.sounds == User.SoundMode.WARNINGS) {
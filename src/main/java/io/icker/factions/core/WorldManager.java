@@ -7,6 +7,7 @@ import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.User;
 import io.icker.factions.util.Message;
+import io.icker.factions.util.WorldUtils;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Formatting;
@@ -26,22 +27,22 @@ public class WorldManager {
     private static void onMove(ServerPlayerEntity player) {
         User user = User.get(player.getUuid());
         ServerWorld world = (ServerWorld) player.getWorld();
-        String dimension = world.getRegistryKey().getValue().toString();
+        int level = WorldUtils.getWorldID(world);
 
         ChunkPos chunkPos = world.getChunk(player.getBlockPos()).getPos();
 
-        Claim claim = Claim.get(chunkPos.x, chunkPos.z, dimension);
+        Claim claim = Claim.get(chunkPos.x, chunkPos.z, level);
         if (user.autoclaim && claim == null) {
             Faction faction = user.getFaction();
-            int requiredPower = (faction.getClaims().size() + 1) * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT;
-            int maxPower = faction.getUsers().size() * FactionsMod.CONFIG.POWER.MEMBER + FactionsMod.CONFIG.POWER.BASE;
+            int requiredPower = (faction.getClaimCount() + 1) * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT;
+            int maxPower = faction.getUserCount() * FactionsMod.CONFIG.POWER.MEMBER + FactionsMod.CONFIG.POWER.BASE;
 
             if (maxPower < requiredPower) {
                 new Message("Not enough faction power to claim chunk, autoclaim toggled off").fail().send(player, false);
                 user.autoclaim = false;
             } else {
-                faction.addClaim(chunkPos.x, chunkPos.z, dimension);
-                claim = Claim.get(chunkPos.x, chunkPos.z, dimension);
+                faction.addClaim(chunkPos.x, chunkPos.z, WorldUtils.getLevel(level));
+                claim = Claim.get(chunkPos.x, chunkPos.z, level);
                 new Message(
                     "Chunk (%d, %d) claimed by %s",
                     chunkPos.x,
@@ -0,0 +1,88 @@
+package io.icker.factions.database;
+
+import io.icker.factions.api.persistents.Claim;
+import io.icker.factions.api.persistents.User.Rank;
+import io.icker.factions.util.WorldUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Binary region file layout for claims. Dimensions and faction IDs are written once each in
+ * per-file dictionaries, and every claim is stored as its chunk coordinates packed into a long,
+ * a dimension index, a faction index and an access level, 12 bytes in total.
+ */
+public class ClaimFormat implements RegionStore.Format<Claim> {
+    private static final int MAGIC = 0x46434c4d;
+    private static final byte VERSION = 1;
+    private static final Rank[] RANKS = Rank.values();
+
+    @Override
+    public void write(DataOutputStream out, Collection<Claim> claims) throws IOException {
+        LinkedHashMap<String, Integer> levels = new LinkedHashMap<String, Integer>();
+        LinkedHashMap<UUID, Integer> factions = new LinkedHashMap<UUID, Integer>();
+        for (Claim claim : claims) {
+            levels.putIfAbsent(claim.level, levels.size());
+            factions.putIfAbsent(claim.factionID, factions.size());
+        }
+
+        if (levels.size() > 0xff || factions.size() > 0xffff) {
+            throw new IOException("Too many distinct dimensions or factions for one region file");
+        }
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+
+        out.writeByte(levels.size());
+        for (String level : levels.keySet()) {
+            out.writeUTF(level);
+        }
+
+        out.writeShort(factions.size());
+        for (UUID factionID : factions.keySet()) {
+            out.writeLong(factionID.getMostSignificantBits());
+            out.writeLong(factionID.getLeastSignificantBits());
+        }
+
+        out.writeInt(claims.size());
+        for (Claim claim : claims) {
+            out.writeLong(((long) claim.x << 32) | (claim.z & 0xffffffffL));
+            out.writeByte(levels.get(claim.level));
+            out.writeShort(factions.get(claim.factionID));
+            out.writeByte(claim.accessLevel == null ? -1 : claim.accessLevel.ordinal());
+        }
+    }
+
+    @Override
+    public List<Claim> read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a claim region file");
+
+        byte version = in.readByte();
+        if (version != VERSION) throw new IOException("Unsupported claim region version " + version);
+
+        String[] levels = new String[in.readUnsignedByte()];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = WorldUtils.intern(in.readUTF());
+        }
+
+        UUID[] factions = new UUID[in.readUnsignedShort()];
+        for (int i = 0; i < factions.length; i++) {
+            factions[i] = new UUID(in.readLong(), in.readLong());
+        }
+
+        int size = in.readInt();
+        ArrayList<Claim> claims = new ArrayList<Claim>(size);
+        for (int i = 0; i < size; i++) {
+            long pos = in.readLong();
+            Claim claim = new Claim((int) (pos >> 32), (int) pos, levels[in.readUnsignedByte()], factions[in.readUnsignedShort()]);
+
+            byte accessLevel = in.readByte();
+            claim.accessLevel = accessLevel < 0 ? null : RANKS[accessLevel];
+            claims.add(claim);
+        }
+
+        return claims;
+    }
+}
@@ -0,0 +1,202 @@
+package io.icker.factions.database;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtList;
+
+/**
+ * Reads, writes and copies the {@link io.icker.factions.database.Field} annotated fields of one class through
+ * method handles resolved once in {@link Database#setup}, so the per-record path does no reflection.
+ * Primitive fields go through exactly typed handles and the primitive NBT accessors, so they are never boxed.
+ */
+class Codec<T> {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final MethodHandle constructor;
+    private final Entry[] entries;
+
+    @FunctionalInterface
+    private interface Encoder {
+        void encode(Object item, NbtCompound compound) throws Throwable;
+    }
+
+    @FunctionalInterface
+    private interface Decoder {
+        void decode(Object item, NbtCompound compound) throws Throwable;
+    }
+
+    @FunctionalInterface
+    private interface Copier {
+        void copy(Object from, Object to) throws Throwable;
+    }
+
+    private record Entry(String key, Encoder encoder, Decoder decoder, Copier copier) {}
+
+    private Codec(MethodHandle constructor, Entry[] entries) {
+        this.constructor = constructor;
+        this.entries = entries;
+    }
+
+    static <T> Codec<T> create(Class<T> clazz, List<Field> fields) throws ReflectiveOperationException {
+        Constructor<T> constructor = clazz.getDeclaredConstructor();
+        constructor.setAccessible(true);
+
+        Entry[] entries = new Entry[fields.size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = createEntry(fields.get(i));
+        }
+
+        return new Codec<T>(LOOKUP.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class)), entries);
+    }
+
+    @SuppressWarnings("unchecked")
+    T decode(NbtCompound compound) throws ReflectiveOperationException {
+        try {
+            Object item = (Object) constructor.invokeExact();
+            for (Entry entry : entries) {
+                if (compound.contains(entry.key)) entry.decoder.decode(item, compound);
+            }
+            return (T) item;
+        } catch (RuntimeException | Error | ReflectiveOperationException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ReflectiveOperationException("Failed to decode " + compound, e);
+        }
+    }
+
+    NbtCompound encode(T item) throws ReflectiveOperationException {
+        NbtCompound compound = new NbtCompound();
+        try {
+            for (Entry entry : entries) {
+                entry.encoder.encode(item, compound);
+            }
+        } catch (RuntimeException | Error | ReflectiveOperationException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ReflectiveOperationException("Failed to encode " + item, e);
+        }
+        return compound;
+    }
+
+    /**
+     * Copies the item deep enough that encoding the copy is unaffected by later changes to the original,
+     * see {@link Database#copy}
+     */
+    @SuppressWarnings("unchecked")
+    T copy(T item) throws ReflectiveOperationException {
+        try {
+            Object copy = (Object) constructor.invokeExact();
+            for (Entry entry : entries) {
+                entry.copier.copy(item, copy);
+            }
+            return (T) copy;
+        } catch (RuntimeException | Error | ReflectiveOperationException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ReflectiveOperationException("Failed to copy " + item, e);
+        }
+    }
+
+    private static Entry createEntry(Field field) throws IllegalAccessException {
+        String key = field.getAnnotation(io.icker.factions.database.Field.class).value();
+        Class<?> type = field.getType();
+
+        field.setAccessible(true);
+        MethodHandle getter = LOOKUP.unreflectGetter(field);
+        MethodHandle setter = LOOKUP.unreflectSetter(field);
+
+        if (type.isPrimitive()) {
+            getter = getter.asType(MethodType.methodType(type, Object.class));
+            setter = setter.asType(MethodType.methodType(void.class, Object.class, type));
+            MethodHandle get = getter;
+            MethodHandle set = setter;
+            // (to, from) -> set(to, get(from)), passing the value through unboxed
+            MethodHandle transfer = MethodHandles.collectArguments(setter, 1, getter);
+            // block bodies, as an expression lambda types the call site of invokeExact as returning Object
+            Copier copier = (from, to) -> {
+                transfer.invokeExact(to, from);
+            };
+
+            if (type == int.class) {
+                return new Entry(key, (item, compound) -> compound.putInt(key, (int) get.invokeExact(item)),
+                    (item, compound) -> {
+                        set.invokeExact(item, compound.getInt(key));
+                    }, copier);
+            }
+            if (type == long.class) {
+                return new Entry(key, (item, compound) -> compound.putLong(key, (long) get.invokeExact(item)),
+                    (item, compound) -> {
+                        set.invokeExact(item, compound.getLong(key));
+                    }, copier);
+            }
+            if (type == float.class) {
+                return new Entry(key, (item, compound) -> compound.putFloat(key, (float) get.invokeExact(item)),
+                    (item, compound) -> {
+                        set.invokeExact(item, compound.getFloat(key));
+                    }, copier);
+            }
+            if (type == double.class) {
+                return new Entry(key, (item, compound) -> compound.putDouble(key, (double) get.invokeExact(item)),
+                    (item, compound) -> {
+                        set.invokeExact(item, compound.getDouble(key));
+                    }, copier);
+            }
+            if (type == boolean.class) {
+                return new Entry(key, (item, compound) -> compound.putBoolean(key, (boolean) get.invokeExact(item)),
+                    (item, compound) -> {
+                        set.invokeExact(item, compound.getBoolean(key));
+                    }, copier);
+            }
+            if (type == short.class) {
+                return new Entry(key, (item, compound) -> compound.putShort(key, (short) get.invokeExact(item)),
+                    (item, compound) -> {
+                        set.invokeExact(item, compound.getShort(key));
+                    }, copier);
+            }
+            if (type == byte.class) {
+                return new Entry(key, (item, compound) -> compound.putByte(key, (byte) get.invokeExact(item)),
+                    (item, compound) -> {
+                        set.invokeExact(item, compound.getByte(key));
+                    }, copier);
+            }
+        }
+
+        MethodHandle get = getter.asType(MethodType.methodType(Object.class, Object.class));
+        MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+        if (ArrayList.class.isAssignableFrom(type)) {
+            Class<?> genericType = (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+            return new Entry(key, (item, compound) -> {
+                Object data = (Object) get.invokeExact(item);
+                if (data != null) compound.put(key, Database.serializeList(genericType, Database.cast(data)));
+            }, (item, compound) -> {
+                Object data = Database.deserializeList(genericType, (NbtList) compound.get(key));
+                set.invokeExact(item, data);
+            }, (from, to) -> {
+                Object data = (Object) get.invokeExact(from);
+                Object copy = data == null ? null : Database.copyList(genericType, Database.cast(data));
+                set.invokeExact(to, copy);
+            });
+        }
+
+        return new Entry(key, (item, compound) -> {
+            Object data = (Object) get.invokeExact(item);
+            if (data != null) compound.put(key, Database.serialize(type, Database.cast(data)));
+        }, (item, compound) -> {
+            Object data = Database.deserialize(type, compound.get(key));
+            set.invokeExact(item, data);
+        }, (from, to) -> {
+            Object data = (Object) get.invokeExact(from);
+            Object copy = Database.copy(type, Database.cast(data));
+            set.invokeExact(to, copy);
+        });
+    }
+}
@@ -1,14 +1,30 @@
 package io.icker.factions.database;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 import io.icker.factions.FactionsMod;
 import net.fabricmc.loader.api.FabricLoader;
@@ -16,71 +32,146 @@ import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtIo;
 import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtTagSizeTracker;
+import net.minecraft.nbt.NbtType;
+import net.minecraft.nbt.NbtTypes;
 
 public class Database {
-    private static final File BASE_PATH = FabricLoader.getInstance().getGameDir().resolve("factions").toFile();
-    private static final HashMap<Class<?>, HashMap<String, Field>> cache = new HashMap<Class<?>, HashMap<String, Field>>();
+    static final File BASE_PATH = FabricLoader.getInstance().getGameDir().resolve("factions").toFile();
+    private static final ConcurrentHashMap<Class<?>, Codec<?>> cache = new ConcurrentHashMap<Class<?>, Codec<?>>();
     private static final String KEY = "CORE";
+    private static final int BATCH_SIZE = 256;
+
+    static final FileBackend FILES = new FileBackend();
+    private static StorageBackend backend;
+
+    /**
+     * @return The backend picked in the config, opened on first use
+     */
+    static synchronized StorageBackend getBackend() {
+        if (backend == null) {
+            backend = switch (FactionsMod.CONFIG.DATABASE.BACKEND) {
+                case NBT -> FILES;
+                case SQLITE -> SqliteBackend.open(new File(BASE_PATH, "factions.db"));
+            };
+        }
+        return backend;
+    }
 
-    public static <T, E> HashMap<E, T> load(Class<T> clazz, Function<T, E> getStoreKey) {
+    public static synchronized void close() {
+        if (backend == null) return;
+
+        backend.close();
+        backend = null;
+    }
+
+    public static File getFile(Class<?> clazz) {
         String name = clazz.getAnnotation(Name.class).value();
-        File file = new File(BASE_PATH, name.toLowerCase() + ".dat");
+        return new File(BASE_PATH, name.toLowerCase() + ".dat");
+    }
 
+    public static <T, E> HashMap<E, T> load(Class<T> clazz, Function<T, E> getStoreKey) {
         if (!cache.containsKey(clazz)) setup(clazz);
 
         HashMap<E, T> store = new HashMap<E, T>();
-
-        if (!file.exists()) {
-            if (!BASE_PATH.exists()) BASE_PATH.mkdir();
-            try {
-                file.createNewFile();
-            } catch (IOException e) {
-                FactionsMod.LOGGER.error("Failed to create file ({})", file, e);
-            }
-            return store;
+        for (T item : getBackend().loadAll(clazz, getStoreKey)) {
+            store.put(getStoreKey.apply(item), item);
         }
 
+        return store;
+    }
+
+    /**
+     * Persists the store through the configured backend, which may write just the changed items or the whole store
+     */
+    public static <T, E> boolean save(Class<T> clazz, Function<T, E> getStoreKey, Collection<T> items, DirtyTracker<T> dirty) {
+        if (!cache.containsKey(clazz)) setup(clazz);
+
+        return getBackend().saveAll(clazz, getStoreKey, items, dirty);
+    }
+
+    /**
+     * Reads every item stored in the file, preferring a snapshot that is still queued for writing over what is on disk
+     */
+    static <T> List<T> read(Class<T> clazz, File file) {
+        if (!cache.containsKey(clazz)) setup(clazz);
+
         try {
-            NbtList list = (NbtList) NbtIo.readCompressed(file).get(KEY);
-            for (T item : deserializeList(clazz, list)) {
-                store.put(getStoreKey.apply(item), item);
-            }
+            NbtCompound data = SaveQueue.get(file);
+            if (data != null) return deserializeList(clazz, (NbtList) data.get(KEY));
+
+            if (!file.exists()) return new ArrayList<T>();
+            return stream(clazz, file);
         } catch (IOException | ReflectiveOperationException e) {
             FactionsMod.LOGGER.error("Failed to read NBT data ({})", file, e);
+            return new ArrayList<T>();
         }
-
-        return store;
     }
 
-    private static <T> T deserialize(Class<T> clazz, NbtElement value) throws IOException, ReflectiveOperationException {
-        if (SerializerRegistry.contains(clazz)) {
-            return SerializerRegistry.fromNbtElement(clazz, value);
-        }
+    /**
+     * Decodes the items straight from the compressed file, so the NBT tree of the whole file is
+     * never built. Decompressing is sequential, but records are handed to the fork-join pool in
+     * small batches and decoded while the rest of the file is still being read.
+     */
+    private static <T> ArrayList<T> stream(Class<T> clazz, File file) throws IOException, ReflectiveOperationException {
+        ArrayList<ForkJoinTask<ArrayList<T>>> batches = new ArrayList<ForkJoinTask<ArrayList<T>>>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readByte() != NbtElement.COMPOUND_TYPE) {
+                throw new IOException("Root tag must be a compound");
+            }
+            in.readUTF();
 
-        NbtCompound compound = (NbtCompound) value;
-        T item = (T) clazz.getDeclaredConstructor().newInstance();
+            byte type;
+            while ((type = in.readByte()) != NbtElement.END_TYPE) {
+                String key = in.readUTF();
 
-        HashMap<String, Field> fields = cache.get(clazz);
-        for (Map.Entry<String, Field> entry : fields.entrySet()) {
-            String key = entry.getKey();
-            Field field = entry.getValue();
+                if (type != NbtElement.LIST_TYPE || !key.equals(KEY)) {
+                    NbtTypes.byId(type).read(in, 0, NbtTagSizeTracker.EMPTY);
+                    continue;
+                }
 
-            if (!compound.contains(key)) continue;
+                NbtType<?> elementType = NbtTypes.byId(in.readByte());
+                int size = in.readInt();
 
-            Class<?> type = field.getType();
+                NbtList batch = new NbtList();
+                for (int i = 0; i < size; i++) {
+                    batch.add(elementType.read(in, 1, NbtTagSizeTracker.EMPTY));
+                    if (batch.size() == BATCH_SIZE || i == size - 1) {
+                        NbtList records = batch;
+                        batches.add(ForkJoinPool.commonPool().submit(() -> deserializeList(clazz, records)));
+                        batch = new NbtList();
+                    }
+                }
+            }
+        }
 
-            if (ArrayList.class.isAssignableFrom(type)) {
-                Class<?> genericType = (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
-                field.set(item, deserializeList(genericType, (NbtList) compound.get(key)));
-            } else {
-                field.set(item, deserialize(type, compound.get(key)));
+        ArrayList<T> items = new ArrayList<T>();
+        for (ForkJoinTask<ArrayList<T>> batch : batches) {
+            try {
+                items.addAll(batch.get());
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while decoding " + file, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException cause) throw cause;
+                if (e.getCause() instanceof ReflectiveOperationException cause) throw cause;
+                throw new IOException("Failed to decode " + file, e.getCause());
             }
         }
 
-        return item;
+        return items;
+    }
+
+    static <T> T deserialize(Class<T> clazz, NbtElement value) throws IOException, ReflectiveOperationException {
+        if (SerializerRegistry.contains(clazz)) {
+            return SerializerRegistry.fromNbtElement(clazz, value);
+        }
+
+        Codec<T> codec = cast(cache.get(clazz));
+        return codec.decode((NbtCompound) value);
     }
 
-    private static <T> ArrayList<T> deserializeList(Class<T> clazz, NbtList list) throws IOException, ReflectiveOperationException {
+    static <T> ArrayList<T> deserializeList(Class<T> clazz, NbtList list) throws IOException, ReflectiveOperationException {
         ArrayList<T> store = new ArrayList<T>();
 
         for (int i = 0; i < list.size(); i++) {
@@ -90,49 +181,209 @@ public class Database {
         return store;
     }
 
-    public static <T> void save(Class<T> clazz, List<T> items) {
-        String name = clazz.getAnnotation(Name.class).value();
-        File file = new File(BASE_PATH, name.toLowerCase() + ".dat");
+    /**
+     * Saves the items as a list, serialized on the {@link SaveQueue} when asynchronous saving is enabled,
+     * so the caller must not change them afterwards
+     */
+    static <T> boolean save(Class<T> clazz, File file, List<T> items) {
+        if (!cache.containsKey(clazz)) setup(clazz);
 
+        return save(file, () -> {
+            NbtCompound fileData = new NbtCompound();
+            try {
+                fileData.put(KEY,  serializeList(clazz, items));
+            } catch (IOException | ReflectiveOperationException e) {
+                FactionsMod.LOGGER.error("Failed to serialize NBT data ({})", file, e);
+                return null;
+            }
+            return fileData;
+        });
+    }
+
+    /**
+     * Saves a single item as its own file. Only a {@link #copy} of the item is taken on the calling thread,
+     * building the NBT tree, compressing and writing it happen on the {@link SaveQueue} when asynchronous
+     * saving is enabled.
+     */
+    static <T> boolean saveRecord(Class<T> clazz, File file, T item) {
         if (!cache.containsKey(clazz)) setup(clazz);
 
+        T copy;
         try {
-            NbtCompound fileData = new NbtCompound();
-            fileData.put(KEY,  serializeList(clazz, items));
-            NbtIo.writeCompressed(fileData, file);
+            copy = copy(clazz, item);
         } catch (IOException | ReflectiveOperationException e) {
-            FactionsMod.LOGGER.error("Failed to write NBT data ({})", file, e);
+            FactionsMod.LOGGER.error("Failed to copy NBT data ({})", file, e);
+            return false;
+        }
+
+        return save(file, () -> {
+            try {
+                return (NbtCompound) serialize(clazz, copy);
+            } catch (IOException | ReflectiveOperationException e) {
+                FactionsMod.LOGGER.error("Failed to serialize NBT data ({})", file, e);
+                return null;
+            }
+        });
+    }
+
+    static boolean save(File file, NbtCompound data) {
+        if (FactionsMod.CONFIG.DATABASE.ASYNC_SAVING) {
+            SaveQueue.submit(file, data);
+            return true;
+        }
+
+        return write(file, data);
+    }
+
+    /**
+     * Saves data that is only turned into NBT when it is written, or right away when saving synchronously
+     * @param data Returns null if the data could not be serialized
+     */
+    static boolean save(File file, Supplier<NbtCompound> data) {
+        if (FactionsMod.CONFIG.DATABASE.ASYNC_SAVING) {
+            SaveQueue.submit(file, data);
+            return true;
+        }
+
+        NbtCompound compound = data.get();
+        return compound != null && write(file, compound);
+    }
+
+    /**
+     * Reads an NBT file, preferring a snapshot that is still queued for writing over what is on disk
+     * @return The contents, or null if the file does not exist
+     */
+    static NbtCompound readCompound(File file) throws IOException {
+        NbtCompound data = SaveQueue.get(file);
+        if (data != null) return data;
+
+        return file.exists() ? NbtIo.readCompressed(file) : null;
+    }
+
+    /**
+     * Deletes the file, after any write of it that is still queued when saving asynchronously
+     */
+    static void delete(File file) {
+        if (FactionsMod.CONFIG.DATABASE.ASYNC_SAVING) {
+            SaveQueue.delete(file);
+        } else if (file.exists() && !file.delete()) {
+            FactionsMod.LOGGER.warn("Failed to delete file ({})", file);
+        }
+    }
+
+    /**
+     * Saves data that was already encoded by the caller, queueing it like {@link #save} does when asynchronous saving is enabled
+     */
+    static boolean save(File file, byte[] data) {
+        if (FactionsMod.CONFIG.DATABASE.ASYNC_SAVING) {
+            SaveQueue.submit(file, data);
+            return true;
+        }
+
+        return write(file, data);
+    }
+
+    /**
+     * Reads the raw contents of the file, preferring bytes that are still queued for writing over what is on disk
+     * @return The contents, or null if the file does not exist
+     */
+    static byte[] readBytes(File file) throws IOException {
+        byte[] data = SaveQueue.getBytes(file);
+        if (data != null) return data;
+
+        return file.exists() ? Files.readAllBytes(file.toPath()) : null;
+    }
+
+    static boolean write(File file, NbtCompound data) {
+        return writeAtomically(file, temp -> NbtIo.writeCompressed(data, temp));
+    }
+
+    static boolean write(File file, byte[] data) {
+        return writeAtomically(file, temp -> Files.write(temp.toPath(), data));
+    }
+
+    @FunctionalInterface
+    private interface FileWriter {
+        void write(File temp) throws IOException;
+    }
+
+    /**
+     * Writes to a temporary file first and moves it over the old one, so a crash mid-write never leaves a torn file
+     */
+    private static boolean writeAtomically(File file, FileWriter writer) {
+        File temp = new File(file.getPath() + ".tmp");
+
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            writer.write(temp);
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            FactionsMod.LOGGER.error("Failed to write data ({})", file, e);
+            return false;
         }
     }
 
-    private static <T> NbtElement serialize(Class<T> clazz, T item) throws IOException, ReflectiveOperationException {
+    /**
+     * Encodes a single item as uncompressed NBT, for backends that store records individually
+     */
+    static <T> byte[] encode(Class<T> clazz, T item) throws IOException, ReflectiveOperationException {
+        if (!cache.containsKey(clazz)) setup(clazz);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NbtIo.write((NbtCompound) serialize(clazz, item), new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    static <T> T decode(Class<T> clazz, byte[] data) throws IOException, ReflectiveOperationException {
+        if (!cache.containsKey(clazz)) setup(clazz);
+
+        return deserialize(clazz, NbtIo.read(new DataInputStream(new ByteArrayInputStream(data))));
+    }
+
+    static <T> NbtElement serialize(Class<T> clazz, T item) throws IOException, ReflectiveOperationException {
         if (SerializerRegistry.contains(clazz)) {
             return SerializerRegistry.toNbtElement(clazz, item);
         }
 
-        HashMap<String, Field> fields = cache.get(clazz);
-        NbtCompound compound = new NbtCompound();
-        for (Map.Entry<String, Field> entry : fields.entrySet()) {
-            String key = entry.getKey();
-            Field field = entry.getValue();
-
-            Class<?> type = field.getType();
-            Object data = field.get(item);
+        Codec<T> codec = cast(cache.get(clazz));
+        return codec.encode(item);
+    }
 
-            if (data == null) continue;
+    /**
+     * Copies the item deep enough that serializing the copy on another thread is unaffected by later changes
+     * to the original. Nested records and lists are copied, immutable values are shared and other registered
+     * types are copied through their serializer.
+     */
+    static <T> T copy(Class<T> clazz, T item) throws IOException, ReflectiveOperationException {
+        if (item == null) return null;
 
-            if (ArrayList.class.isAssignableFrom(type)) {
-                Class<?> genericType = (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
-                compound.put(key, serializeList(genericType, cast(data)));
-            } else {
-                compound.put(key, serialize(type, cast(data)));
+        if (SerializerRegistry.contains(clazz)) {
+            if (item instanceof String || item instanceof UUID || item instanceof Enum || item instanceof Number || item instanceof Boolean) {
+                return item;
             }
+            return SerializerRegistry.fromNbtElement(clazz, SerializerRegistry.toNbtElement(clazz, item));
         }
 
-        return compound;
+        Codec<T> codec = cast(cache.get(clazz));
+        return codec.copy(item);
     }
 
-    private static <T> NbtList serializeList(Class<T> clazz, List<T> items) throws IOException, ReflectiveOperationException {
+    static <T> ArrayList<T> copyList(Class<T> clazz, List<T> items) throws IOException, ReflectiveOperationException {
+        ArrayList<T> copies = new ArrayList<T>(items.size());
+
+        for (T item : items) {
+            copies.add(copy(clazz, item));
+        }
+
+        return copies;
+    }
+
+    static <T> NbtList serializeList(Class<T> clazz, List<T> items) throws IOException, ReflectiveOperationException {
         NbtList list = new NbtList();
 
         for (T item : items) {
@@ -143,12 +394,11 @@ public class Database {
     }
 
     private static <T> void setup(Class<T> clazz) {
-        HashMap<String, Field> fields = new HashMap<String, Field>();
+        ArrayList<Field> fields = new ArrayList<Field>();
 
         for (Field field : clazz.getDeclaredFields()) {
             if (field.isAnnotationPresent(io.icker.factions.database.Field.class)) {
-                field.setAccessible(true);
-                fields.put(field.getAnnotation(io.icker.factions.database.Field.class).value(), field);
+                fields.add(field);
 
                 Class<?> type = field.getType();
                 if (!SerializerRegistry.contains(type)) {
@@ -162,11 +412,15 @@ public class Database {
             }
         }
 
-        cache.put(clazz, fields);
+        try {
+            cache.put(clazz, Codec.create(clazz, fields));
+        } catch (ReflectiveOperationException e) {
+            FactionsMod.LOGGER.error("Failed to create codec ({})", clazz, e);
+        }
     }
 
     @SuppressWarnings("unchecked")
-    private static <T> T cast(Object key) {
+    static <T> T cast(Object key) {
         return (T) key;
     }
 }
@@ -0,0 +1,44 @@
+package io.icker.factions.database;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Keeps track of which items of a persistent store were changed or removed since it was last saved
+ */
+public class DirtyTracker<T> {
+    private final Set<T> changed = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+    private final Set<T> removed = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+
+    public void mark(T item) {
+        removed.remove(item);
+        changed.add(item);
+    }
+
+    public void markRemoved(T item) {
+        changed.remove(item);
+        removed.add(item);
+    }
+
+    public boolean isDirty(T item) {
+        return changed.contains(item);
+    }
+
+    public boolean isDirty() {
+        return !changed.isEmpty() || !removed.isEmpty();
+    }
+
+    public Set<T> getChanged() {
+        return Collections.unmodifiableSet(changed);
+    }
+
+    public Set<T> getRemoved() {
+        return Collections.unmodifiableSet(removed);
+    }
+
+    public void clear() {
+        changed.clear();
+        removed.clear();
+    }
+}
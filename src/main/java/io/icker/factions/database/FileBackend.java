@@ -0,0 +1,126 @@
+package io.icker.factions.database;
+
+import io.icker.factions.FactionsMod;
+import net.minecraft.nbt.NbtCompound;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * The default backend: one GZIP compressed NBT file per record under factions/<table>/, so a save
+ * only writes the records that changed, and region files for claims. Stores kept as a single file by
+ * older versions are read from it until the first save has written every record.
+ */
+class FileBackend implements StorageBackend {
+    @Override
+    public <T, E> List<T> loadAll(Class<T> clazz, Function<T, E> getStoreKey) {
+        // the single file is only moved once every record has been written, so while it exists it is the complete store
+        File legacy = Database.getFile(clazz);
+        if (legacy.exists() && legacy.length() > 0) return Database.read(clazz, legacy);
+
+        String table = getTable(clazz);
+        return getKeys(table)
+            .parallelStream()
+            .map(key -> readRecord(clazz, table, key))
+            .filter(Objects::nonNull)
+            .toList();
+    }
+
+    @Override
+    public <T, E> boolean saveAll(Class<T> clazz, Function<T, E> getStoreKey, Collection<T> items, DirtyTracker<T> dirty) {
+        String table = getTable(clazz);
+        File legacy = Database.getFile(clazz);
+        boolean migrating = legacy.exists();
+
+        boolean saved = true;
+        for (T item : migrating ? items : dirty.getChanged()) {
+            saved &= Database.saveRecord(clazz, getFile(table, getStoreKey.apply(item).toString()), item);
+        }
+        for (T item : dirty.getRemoved()) {
+            delete(table, getStoreKey.apply(item).toString());
+        }
+        if (!migrating || !saved) return saved;
+
+        // records left by a migration that never finished may belong to items that were not kept
+        HashSet<String> keys = new HashSet<String>();
+        items.forEach(item -> keys.add(getStoreKey.apply(item).toString()));
+        getKeys(table).stream().filter(key -> !keys.contains(key)).forEach(key -> delete(table, key));
+
+        // the single file wins on load while it exists, so it may only go once every record is on disk
+        if (!SaveQueue.flush()) return false;
+        if (legacy.renameTo(new File(legacy.getPath() + ".migrated"))) {
+            FactionsMod.LOGGER.info("Migrated {} entries from {} into {}", items.size(), legacy, table);
+        }
+        return true;
+    }
+
+    @Override
+    public NbtCompound read(String table, String key) {
+        File file = getFile(table, key);
+        try {
+            return Database.readCompound(file);
+        } catch (IOException e) {
+            FactionsMod.LOGGER.error("Failed to read NBT data ({})", file, e);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean write(String table, String key, NbtCompound data) {
+        return Database.save(getFile(table, key), data);
+    }
+
+    @Override
+    public void delete(String table, String key) {
+        Database.delete(getFile(table, key));
+    }
+
+    @Override
+    public <T> RegionStore.Persistence<T> getRegions(RegionStore<T> store) {
+        return new RegionFiles<T>(store);
+    }
+
+    @Override
+    public void close() {}
+
+    /**
+     * @return The keys of every record in the table
+     */
+    List<String> getKeys(String table) {
+        ArrayList<String> keys = new ArrayList<String>();
+
+        File[] files = new File(Database.BASE_PATH, table).listFiles((dir, name) -> name.endsWith(".dat"));
+        if (files == null) return keys;
+
+        for (File file : files) {
+            keys.add(file.getName().substring(0, file.getName().length() - ".dat".length()));
+        }
+        return keys;
+    }
+
+    private <T> T readRecord(Class<T> clazz, String table, String key) {
+        NbtCompound data = read(table, key);
+        if (data == null) return null;
+
+        try {
+            return Database.deserialize(clazz, data);
+        } catch (IOException | ReflectiveOperationException e) {
+            FactionsMod.LOGGER.error("Failed to decode record ({}/{})", table, key, e);
+            return null;
+        }
+    }
+
+    private static String getTable(Class<?> clazz) {
+        return clazz.getAnnotation(Name.class).value().toLowerCase();
+    }
+
+    private static File getFile(String table, String key) {
+        return new File(new File(Database.BASE_PATH, table), key + ".dat");
+    }
+}
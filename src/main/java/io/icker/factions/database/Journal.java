@@ -0,0 +1,194 @@
+package io.icker.factions.database;
+
+import io.icker.factions.FactionsMod;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of mutations made since the last snapshot. Each record is framed as
+ * type, payload length, CRC32 and payload, so a record torn by a crash is detected on replay.
+ * Saving rotates the active log into a numbered segment, which is deleted once the snapshot
+ * covering it has been written.
+ */
+public class Journal {
+    public static final byte CLAIM_ADD = 1;
+    public static final byte CLAIM_REMOVE = 2;
+    public static final byte MEMBER_JOIN = 3;
+    public static final byte MEMBER_LEAVE = 4;
+    public static final byte RELATIONSHIP_SET = 5;
+    public static final byte RELATIONSHIP_REMOVE = 6;
+    public static final byte CLAIM_ADD_ALL = 7;
+    public static final byte CLAIM_REMOVE_ALL = 8;
+    public static final byte CLAIM_ACCESS = 9;
+    public static final byte MEMBER_RANK = 10;
+
+    private static final File FILE = new File(Database.BASE_PATH, "journal.log");
+    private static final Pattern SEGMENT = Pattern.compile("journal-(\\d+)\\.log");
+    private static final int MAX_RECORD_LENGTH = 1 << 16;
+
+    private static FileOutputStream stream;
+    private static DataOutputStream output;
+
+    @FunctionalInterface
+    public interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Replayer {
+        void replay(byte type, DataInputStream in) throws IOException;
+    }
+
+    public static void append(byte type, Writer writer) {
+        if (output == null || !FactionsMod.CONFIG.DATABASE.JOURNAL) return;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writer.write(new DataOutputStream(bytes));
+            byte[] payload = bytes.toByteArray();
+
+            output.writeByte(type);
+            output.writeInt(payload.length);
+            output.writeInt(checksum(type, payload));
+            output.write(payload);
+            output.flush();
+        } catch (IOException e) {
+            FactionsMod.LOGGER.error("Failed to append to the journal ({})", FILE, e);
+        }
+    }
+
+    /**
+     * Replays every segment and the active log in order, then rotates the active log so new
+     * records never follow a torn one
+     * @return The number of records replayed
+     */
+    public static int replay(Replayer replayer) {
+        List<File> files = segments();
+        if (FILE.exists()) files.add(FILE);
+
+        int count = 0;
+        for (File file : files) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                int type;
+                while ((type = in.read()) != -1) {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+
+                    if (length < 0 || length > MAX_RECORD_LENGTH) {
+                        FactionsMod.LOGGER.warn("Corrupt journal record in {}, skipping the rest of the file", file);
+                        break;
+                    }
+
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+
+                    if (checksum(type, payload) != checksum) {
+                        FactionsMod.LOGGER.warn("Corrupt journal record in {}, skipping the rest of the file", file);
+                        break;
+                    }
+
+                    replayer.replay((byte) type, new DataInputStream(new ByteArrayInputStream(payload)));
+                    count++;
+                }
+            } catch (EOFException e) {
+                FactionsMod.LOGGER.warn("Journal {} ends with an incomplete record, it was most likely cut off by a crash", file);
+            } catch (IOException e) {
+                FactionsMod.LOGGER.error("Failed to replay the journal ({})", file, e);
+            }
+        }
+
+        rotate();
+        return count;
+    }
+
+    /**
+     * Moves the active log into a new segment and starts a fresh one
+     * @return Every segment on disk, all of which are covered by a snapshot taken right after this call
+     */
+    public static List<File> rotate() {
+        close();
+
+        if (FILE.exists() && FILE.length() > 0) {
+            List<File> segments = segments();
+            int next = segments.isEmpty() ? 0 : getSegmentNumber(segments.get(segments.size() - 1)) + 1;
+            if (!FILE.renameTo(new File(Database.BASE_PATH, String.format("journal-%d.log", next)))) {
+                FactionsMod.LOGGER.error("Failed to rotate the journal ({})", FILE);
+            }
+        }
+
+        open();
+        return segments();
+    }
+
+    public static void discard(List<File> segments) {
+        for (File segment : segments) {
+            if (segment.exists() && !segment.delete()) {
+                FactionsMod.LOGGER.warn("Failed to delete compacted journal segment ({})", segment);
+            }
+        }
+    }
+
+    public static void close() {
+        if (output == null) return;
+
+        try {
+            output.flush();
+            stream.getFD().sync();
+            output.close();
+        } catch (IOException e) {
+            FactionsMod.LOGGER.error("Failed to close the journal ({})", FILE, e);
+        }
+
+        output = null;
+        stream = null;
+    }
+
+    private static void open() {
+        if (!Database.BASE_PATH.exists()) Database.BASE_PATH.mkdir();
+
+        try {
+            stream = new FileOutputStream(FILE, true);
+            output = new DataOutputStream(new BufferedOutputStream(stream));
+        } catch (IOException e) {
+            FactionsMod.LOGGER.error("Failed to open the journal ({})", FILE, e);
+        }
+    }
+
+    private static List<File> segments() {
+        File[] files = Database.BASE_PATH.listFiles((dir, name) -> SEGMENT.matcher(name).matches());
+        if (files == null) return new ArrayList<File>();
+
+        List<File> segments = new ArrayList<File>(Arrays.asList(files));
+        segments.sort(Comparator.comparingInt(Journal::getSegmentNumber));
+        return segments;
+    }
+
+    private static int getSegmentNumber(File segment) {
+        Matcher matcher = SEGMENT.matcher(segment.getName());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    private static int checksum(int type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    public static void writeUUID(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    public static UUID readUUID(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
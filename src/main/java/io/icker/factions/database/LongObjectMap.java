@@ -0,0 +1,171 @@
+package io.icker.factions.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Open addressing hash map from primitive longs to objects, so looking a key up neither boxes it nor
+ * allocates anything. Collisions are resolved by linear probing and removals shift the following entries
+ * back instead of leaving tombstones. Null values are not allowed, an empty slot is one without a value.
+ */
+public class LongObjectMap<V> {
+    private long[] keys;
+    private V[] values;
+    private int mask;
+    private int size = 0;
+
+    public LongObjectMap() {
+        this(8);
+    }
+
+    public LongObjectMap(int expected) {
+        int capacity = 16;
+        while (capacity < expected * 2) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    public V get(long key) {
+        int i = slot(key);
+        V value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) return value;
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public V put(long key, V value) {
+        Objects.requireNonNull(value);
+
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > values.length) resize(values.length << 1);
+        return null;
+    }
+
+    public V remove(long key) {
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V removed = values[i];
+                shift(i);
+                size--;
+                return removed;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @return Whether anything was removed
+     */
+    public boolean removeIf(Predicate<V> filter) {
+        long[] matches = new long[size];
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && filter.test(values[i])) matches[count++] = keys[i];
+        }
+
+        for (int i = 0; i < count; i++) {
+            remove(matches[i]);
+        }
+        return count > 0;
+    }
+
+    /**
+     * Visits every entry, the map must not be changed while doing so
+     */
+    public void forEach(EntryConsumer<V> consumer) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) consumer.accept(keys[i], values[i]);
+        }
+    }
+
+    public List<V> values() {
+        ArrayList<V> list = new ArrayList<V>(size);
+        for (V value : values) {
+            if (value != null) list.add(value);
+        }
+        return list;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        allocate(16);
+        size = 0;
+    }
+
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Fills the emptied slot with the next entry of the probe sequence that may move there, until an empty slot is reached
+     */
+    private void shift(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            V value = values[i];
+            if (value == null) break;
+
+            if (((i - slot(keys[i])) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = value;
+                gap = i;
+            }
+        }
+        values[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        V[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+
+            int j = slot(oldKeys[i]);
+            while (values[j] != null) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = (V[]) new Object[capacity];
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,184 @@
+package io.icker.factions.database;
+
+import io.icker.factions.FactionsMod;
+import io.icker.factions.database.RegionStore.IndexEntry;
+import io.icker.factions.database.RegionStore.RegionData;
+import io.icker.factions.database.RegionStore.RegionPos;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Keeps each region of a {@link RegionStore} in its own file, factions/<name>/<dimension>/r.<x>.<z>.bin,
+ * and the index entries of each owner in factions/<name>/index/<owner>.dat, so a save only rewrites the
+ * regions and owners that changed. NBT region files and the single index.dat of older versions are read
+ * when nothing newer exists, and deleted once their replacement has been written.
+ */
+class RegionFiles<T> implements RegionStore.Persistence<T> {
+    private final RegionStore<T> store;
+    private final File root;
+    private final File indexDirectory;
+    private final File legacyIndexFile;
+    private final ArrayList<File> legacyFiles = new ArrayList<File>();
+
+    RegionFiles(RegionStore<T> store) {
+        this.store = store;
+        this.root = new File(Database.BASE_PATH, store.name);
+        this.indexDirectory = new File(root, "index");
+        this.legacyIndexFile = new File(root, "index.dat");
+    }
+
+    @Override
+    public List<IndexEntry> readIndex() {
+        // the old index is only deleted once every owner file has been written, so while it exists it is the complete one
+        if (legacyIndexFile.exists()) {
+            List<IndexEntry> entries = Database.read(IndexEntry.class, legacyIndexFile);
+            if (writeIndex(group(entries)) && SaveQueue.flush() && !legacyIndexFile.delete()) {
+                FactionsMod.LOGGER.warn("Failed to delete file ({})", legacyIndexFile);
+            }
+            return entries;
+        }
+        if (indexDirectory.exists()) return readOwners();
+        if (!root.exists()) return new ArrayList<IndexEntry>();
+
+        FactionsMod.LOGGER.warn("Region index for {} is missing, rebuilding it from the region files", root);
+
+        HashMap<RegionPos, HashMap<UUID, Integer>> counts = new HashMap<RegionPos, HashMap<UUID, Integer>>();
+        for (T item : readAll()) {
+            counts.computeIfAbsent(store.getRegionPos(item), pos -> new HashMap<UUID, Integer>())
+                .merge(store.getOwner.apply(item), 1, Integer::sum);
+        }
+
+        ArrayList<IndexEntry> entries = new ArrayList<IndexEntry>();
+        counts.forEach((pos, owners) -> owners.forEach((owner, count) -> entries.add(new IndexEntry(pos, owner, count))));
+        writeIndex(group(entries));
+        return entries;
+    }
+
+    @Override
+    public RegionData<T> readRegion(RegionPos pos) {
+        File file = getFile(pos);
+        try {
+            byte[] data = Database.readBytes(file);
+            if (data != null) return new RegionData<T>(store.format.read(new DataInputStream(new ByteArrayInputStream(data))), false);
+        } catch (IOException e) {
+            FactionsMod.LOGGER.error("Failed to read region ({})", file, e);
+            return new RegionData<T>(new ArrayList<T>(), false);
+        }
+
+        File legacy = getLegacyFile(pos);
+        if (!legacy.exists()) return new RegionData<T>(new ArrayList<T>(), false);
+
+        legacyFiles.add(legacy);
+        return new RegionData<T>(Database.read(store.clazz, legacy), true);
+    }
+
+    @Override
+    public boolean write(Map<RegionPos, Collection<T>> regions, Map<UUID, List<IndexEntry>> index) {
+        boolean saved = true;
+
+        for (Map.Entry<RegionPos, Collection<T>> entry : regions.entrySet()) {
+            File file = getFile(entry.getKey());
+            if (entry.getValue().isEmpty()) {
+                Database.delete(file);
+                continue;
+            }
+
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                store.format.write(new DataOutputStream(bytes), entry.getValue());
+                saved &= Database.save(file, bytes.toByteArray());
+            } catch (IOException e) {
+                FactionsMod.LOGGER.error("Failed to encode region ({})", file, e);
+                saved = false;
+            }
+        }
+
+        saved &= writeIndex(index);
+
+        if (saved && !legacyFiles.isEmpty()) {
+            // the old files can only go once the regions replacing them are on disk
+            List<File> replaced = new ArrayList<File>(legacyFiles);
+            legacyFiles.clear();
+            SaveQueue.then(() -> replaced.forEach(File::delete));
+        }
+
+        return saved;
+    }
+
+    /**
+     * Reads every region on disk, preferring encoded files over NBT ones for the same region
+     */
+    List<T> readAll() {
+        ArrayList<T> items = new ArrayList<T>();
+
+        File[] levels = root.listFiles(File::isDirectory);
+        if (levels == null) return items;
+
+        for (File level : levels) {
+            File[] files = level.listFiles((dir, name) -> name.startsWith("r.") && (name.endsWith(".bin") || name.endsWith(".dat")));
+            if (files == null) continue;
+
+            for (File file : files) {
+                if (file.getName().endsWith(".bin")) {
+                    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                        items.addAll(store.format.read(in));
+                    } catch (IOException e) {
+                        FactionsMod.LOGGER.error("Failed to read region ({})", file, e);
+                    }
+                } else if (!new File(level, file.getName().replace(".dat", ".bin")).exists()) {
+                    items.addAll(Database.read(store.clazz, file));
+                }
+            }
+        }
+
+        return items;
+    }
+
+    private boolean writeIndex(Map<UUID, List<IndexEntry>> index) {
+        boolean saved = true;
+
+        for (Map.Entry<UUID, List<IndexEntry>> owner : index.entrySet()) {
+            File file = new File(indexDirectory, owner.getKey() + ".dat");
+            if (owner.getValue().isEmpty()) {
+                Database.delete(file);
+            } else {
+                saved &= Database.save(IndexEntry.class, file, owner.getValue());
+            }
+        }
+
+        return saved;
+    }
+
+    private List<IndexEntry> readOwners() {
+        ArrayList<IndexEntry> entries = new ArrayList<IndexEntry>();
+
+        File[] files = indexDirectory.listFiles((dir, name) -> name.endsWith(".dat"));
+        if (files == null) return entries;
+
+        for (File file : files) {
+            entries.addAll(Database.read(IndexEntry.class, file));
+        }
+        return entries;
+    }
+
+    private static Map<UUID, List<IndexEntry>> group(List<IndexEntry> entries) {
+        HashMap<UUID, List<IndexEntry>> owners = new HashMap<UUID, List<IndexEntry>>();
+        for (IndexEntry entry : entries) {
+            owners.computeIfAbsent(entry.owner, owner -> new ArrayList<IndexEntry>()).add(entry);
+        }
+        return owners;
+    }
+
+    private File getFile(RegionPos pos) {
+        return new File(new File(root, getDirectoryName(pos.level())), String.format("r.%d.%d.bin", pos.x(), pos.z()));
+    }
+
+    private File getLegacyFile(RegionPos pos) {
+        return new File(new File(root, getDirectoryName(pos.level())), String.format("r.%d.%d.dat", pos.x(), pos.z()));
+    }
+
+    private static String getDirectoryName(String level) {
+        return level.replace(':', '_').replace('/', '_');
+    }
+}
@@ -0,0 +1,697 @@
+package io.icker.factions.database;
+
+import io.icker.factions.FactionsMod;
+import io.icker.factions.util.WorldUtils;
+import net.minecraft.util.math.ChunkPos;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Chunk keyed store split into 32x32 chunk regions per dimension. Regions are read the first
+ * time they are queried and only changed regions are written back, so memory and startup time
+ * follow the part of the map in use rather than the total claimed area. A small index of how
+ * many items each owner has in each region is kept loaded, so regions without any items are
+ * never read and per-owner lookups only read the regions that owner is in. Every region also groups
+ * its items by owner and the index keeps a total per owner, so counting an owner's items is constant
+ * time and listing them is linear in how many it has. Where regions are
+ * kept is up to the {@link StorageBackend}. Each dimension keeps its regions and their items in
+ * primitive maps keyed by packed chunk coordinates, and dimensions are found by their
+ * {@link WorldUtils#getID interned ID}, so looking an item up allocates nothing. Once snapshots are enabled
+ * the store also publishes an immutable {@link View} of which owner has which chunk for other threads,
+ * rebuilding only the regions that changed.
+ */
+public class RegionStore<T> {
+    static final int REGION_SHIFT = 5;
+    static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final int EVICT_AFTER_SAVES = 2;
+
+    final Class<T> clazz;
+    final Format<T> format;
+    final String name;
+    final Function<T, String> getLevel;
+    final ToIntFunction<T> getX;
+    final ToIntFunction<T> getZ;
+    final Function<T, UUID> getOwner;
+
+    private Persistence<T> persistence;
+    private final ArrayList<Dimension<T>> dimensions = new ArrayList<Dimension<T>>();
+    private final HashMap<UUID, Owner> index = new HashMap<UUID, Owner>();
+    private final HashSet<UUID> changedOwners = new HashSet<UUID>();
+    private int generation = 0;
+
+    private boolean snapshots = false;
+    private final HashSet<RegionPos> unpublished = new HashSet<RegionPos>();
+    private final HashMap<RegionPos, Chunks> published = new HashMap<RegionPos, Chunks>();
+    private volatile View view = new View(Map.of(), 0);
+
+    public record RegionPos(String level, int x, int z) {}
+
+    /**
+     * The owners of the occupied chunks of one region, sorted by packed chunk position
+     */
+    private record Chunks(long[] positions, UUID[] owners) {}
+
+    @FunctionalInterface
+    public interface ChunkVisitor {
+        void visit(String level, int x, int z, UUID owner);
+    }
+
+    /**
+     * Immutable record of which owner has which chunk, safe to read from any thread. Only positions and
+     * owners are kept, never the items themselves.
+     */
+    public static class View {
+        private final Map<RegionPos, Chunks> regions;
+        private final long version;
+
+        View(Map<RegionPos, Chunks> regions, long version) {
+            this.regions = regions;
+            this.version = version;
+        }
+
+        /**
+         * @return The owner of the chunk, or null if nothing is in it
+         */
+        public UUID getOwner(String level, int x, int z) {
+            Chunks chunks = regions.get(getRegionPos(level, x, z));
+            if (chunks == null) return null;
+
+            int i = Arrays.binarySearch(chunks.positions, pack(x, z));
+            return i < 0 ? null : chunks.owners[i];
+        }
+
+        /**
+         * Goes through every chunk, so better suited to exports than to frequent lookups
+         */
+        public void forEach(ChunkVisitor visitor) {
+            for (Map.Entry<RegionPos, Chunks> region : regions.entrySet()) {
+                Chunks chunks = region.getValue();
+                for (int i = 0; i < chunks.positions.length; i++) {
+                    visitor.visit(region.getKey().level, unpackX(chunks.positions[i]), unpackZ(chunks.positions[i]), chunks.owners[i]);
+                }
+            }
+        }
+
+        public int size() {
+            int size = 0;
+            for (Chunks chunks : regions.values()) {
+                size += chunks.positions.length;
+            }
+            return size;
+        }
+
+        /**
+         * @return How many views were published before this one
+         */
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    public interface Format<T> {
+        void write(DataOutputStream out, Collection<T> items) throws IOException;
+
+        List<T> read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * @param outdated Whether the region was read from an older layout and has to be written again
+     */
+    record RegionData<T>(List<T> items, boolean outdated) {}
+
+    /**
+     * Reads and writes the regions and index of one store for a {@link StorageBackend}
+     */
+    interface Persistence<T> {
+        List<IndexEntry> readIndex();
+
+        RegionData<T> readRegion(RegionPos pos);
+
+        /**
+         * @param regions The items of every changed region, empty for regions that no longer have any
+         * @param index The entries of every owner whose entries changed since the last write, empty for owners that no longer have any
+         */
+        boolean write(Map<RegionPos, Collection<T>> regions, Map<UUID, List<IndexEntry>> index);
+    }
+
+    private static class Dimension<T> {
+        final String level;
+        final LongObjectMap<Region<T>> regions = new LongObjectMap<Region<T>>();
+        /**
+         * How many items the index has in each region, whether loaded or not
+         */
+        final LongObjectMap<Integer> counts = new LongObjectMap<Integer>();
+
+        Dimension(String level) {
+            this.level = level;
+        }
+    }
+
+    private static class Owner {
+        final HashMap<RegionPos, Integer> regions = new HashMap<RegionPos, Integer>();
+        int total = 0;
+    }
+
+    private static class Region<T> {
+        final RegionPos pos;
+        final LongObjectMap<T> items = new LongObjectMap<T>(64);
+        final HashMap<UUID, LongObjectMap<T>> byOwner = new HashMap<UUID, LongObjectMap<T>>();
+        /**
+         * One bit per chunk that has an item, row by row
+         */
+        final long[] occupied = new long[REGION_SIZE * REGION_SIZE / Long.SIZE];
+        boolean dirty = false;
+        int lastUsed;
+
+        Region(RegionPos pos) {
+            this.pos = pos;
+        }
+
+        void setOccupied(int x, int z, boolean value) {
+            int bit = ((z & (REGION_SIZE - 1)) << REGION_SHIFT) | (x & (REGION_SIZE - 1));
+            if (value) {
+                occupied[bit >>> 6] |= 1L << (bit & 63);
+            } else {
+                occupied[bit >>> 6] &= ~(1L << (bit & 63));
+            }
+        }
+
+        /**
+         * @return The occupied chunks of a row, the lowest bit being the westmost chunk
+         */
+        long getRow(int z) {
+            int bit = (z & (REGION_SIZE - 1)) << REGION_SHIFT;
+            return (occupied[bit >>> 6] >>> (bit & 63)) & ((1L << REGION_SIZE) - 1);
+        }
+    }
+
+    static class IndexEntry {
+        @Field("Level")
+        String level;
+
+        @Field("X")
+        int x;
+
+        @Field("Z")
+        int z;
+
+        @Field("Owner")
+        UUID owner;
+
+        @Field("Count")
+        int count;
+
+        IndexEntry() {}
+
+        IndexEntry(RegionPos pos, UUID owner, int count) {
+            this.level = pos.level;
+            this.x = pos.x;
+            this.z = pos.z;
+            this.owner = owner;
+            this.count = count;
+        }
+    }
+
+    public RegionStore(Class<T> clazz, Format<T> format, String name, Function<T, String> getLevel, ToIntFunction<T> getX, ToIntFunction<T> getZ, Function<T, UUID> getOwner) {
+        this.clazz = clazz;
+        this.format = format;
+        this.name = name;
+        this.getLevel = getLevel;
+        this.getX = getX;
+        this.getZ = getZ;
+        this.getOwner = getOwner;
+    }
+
+    /**
+     * Reads the index from the configured backend. Regions themselves are still read on demand.
+     */
+    public void load() {
+        persistence = Database.getBackend().getRegions(this);
+        dimensions.clear();
+        index.clear();
+        published.clear();
+        unpublished.clear();
+
+        for (IndexEntry entry : persistence.readIndex()) {
+            count(entry.owner, new RegionPos(entry.level, entry.x, entry.z), entry.count);
+        }
+        changedOwners.clear();
+        if (snapshots) unpublishAll();
+    }
+
+    /**
+     * Moves every item of a single file store into regions, then renames the old file out of the way
+     */
+    public void migrate(File legacy) {
+        if (!legacy.exists() || legacy.length() == 0) return;
+
+        List<T> items = Database.read(clazz, legacy);
+        for (T item : items) {
+            put(item);
+        }
+
+        if (save() && SaveQueue.flush()) {
+            if (legacy.renameTo(new File(legacy.getPath() + ".migrated"))) {
+                FactionsMod.LOGGER.info("Migrated {} entries from {} into regions", items.size(), legacy);
+            }
+        }
+    }
+
+    public T get(String level, int x, int z) {
+        return get(WorldUtils.getID(level), x, z);
+    }
+
+    /**
+     * @param level The {@link WorldUtils#getID interned ID} of the dimension
+     */
+    public T get(int level, int x, int z) {
+        Region<T> region = findRegion(findDimension(level), x >> REGION_SHIFT, z >> REGION_SHIFT);
+        return region == null ? null : region.items.get(pack(x, z));
+    }
+
+    /**
+     * Visits every item inside the rectangle, bounds included, region by region and row by row. Regions
+     * the index has nothing in are skipped without being read. An inverted rectangle has nothing in it.
+     */
+    public void query(String level, int minX, int minZ, int maxX, int maxZ, Consumer<T> visitor) {
+        if (minX > maxX || minZ > maxZ) return;
+
+        Dimension<T> dimension = findDimension(WorldUtils.getID(level));
+        if (dimension == null) return;
+
+        for (int regionX = minX >> REGION_SHIFT; regionX <= maxX >> REGION_SHIFT; regionX++) {
+            for (int regionZ = minZ >> REGION_SHIFT; regionZ <= maxZ >> REGION_SHIFT; regionZ++) {
+                Region<T> region = findRegion(dimension, regionX, regionZ);
+                if (region == null || region.items.isEmpty()) continue;
+
+                int baseX = regionX << REGION_SHIFT;
+                int baseZ = regionZ << REGION_SHIFT;
+                int fromX = Math.max(minX, baseX) - baseX;
+                int toX = Math.min(maxX, baseX + REGION_SIZE - 1) - baseX;
+                long columns = (-1L >>> (63 - (toX - fromX))) << fromX;
+
+                for (int z = Math.max(minZ, baseZ); z <= Math.min(maxZ, baseZ + REGION_SIZE - 1); z++) {
+                    long row = region.getRow(z) & columns;
+                    while (row != 0) {
+                        visitor.accept(region.items.get(pack(baseX + Long.numberOfTrailingZeros(row), z)));
+                        row &= row - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    public List<T> query(String level, int minX, int minZ, int maxX, int maxZ) {
+        ArrayList<T> items = new ArrayList<T>();
+        query(level, minX, minZ, maxX, maxZ, items::add);
+        return items;
+    }
+
+    public T put(T item) {
+        int x = getX.applyAsInt(item);
+        int z = getZ.applyAsInt(item);
+        Region<T> region = getRegion(getLevel.apply(item), x >> REGION_SHIFT, z >> REGION_SHIFT);
+
+        long key = pack(x, z);
+        T previous = region.items.put(key, item);
+        if (previous != null) {
+            removeFromOwner(region, key, previous);
+            count(getOwner.apply(previous), region.pos, -1);
+        }
+        addToOwner(region, key, item);
+        region.setOccupied(x, z, true);
+        count(getOwner.apply(item), region.pos, 1);
+
+        changed(region);
+        return previous;
+    }
+
+    public T remove(String level, int x, int z) {
+        Region<T> region = findRegion(findDimension(WorldUtils.getID(level)), x >> REGION_SHIFT, z >> REGION_SHIFT);
+        if (region == null) return null;
+
+        long key = pack(x, z);
+        T removed = region.items.remove(key);
+        if (removed != null) {
+            removeFromOwner(region, key, removed);
+            region.setOccupied(x, z, false);
+            count(getOwner.apply(removed), region.pos, -1);
+            changed(region);
+        }
+        return removed;
+    }
+
+    /**
+     * Flags the region holding the item as changed so it is written on the next save
+     */
+    public void markDirty(T item) {
+        changed(getRegion(getLevel.apply(item), getX.applyAsInt(item) >> REGION_SHIFT, getZ.applyAsInt(item) >> REGION_SHIFT));
+    }
+
+    public boolean isDirty(T item) {
+        Dimension<T> dimension = findDimension(WorldUtils.getID(getLevel.apply(item)));
+        if (dimension == null) return false;
+
+        Region<T> region = dimension.regions.get(pack(getX.applyAsInt(item) >> REGION_SHIFT, getZ.applyAsInt(item) >> REGION_SHIFT));
+        return region != null && region.dirty;
+    }
+
+    public List<T> getByOwner(UUID owner) {
+        Owner entry = index.get(owner);
+        if (entry == null) return new ArrayList<T>();
+
+        ArrayList<T> items = new ArrayList<T>(entry.total);
+        for (RegionPos pos : new ArrayList<RegionPos>(entry.regions.keySet())) {
+            LongObjectMap<T> owned = getRegion(pos.level, pos.x, pos.z).byOwner.get(owner);
+            if (owned != null) items.addAll(owned.values());
+        }
+        return items;
+    }
+
+    public int countByOwner(UUID owner) {
+        Owner entry = index.get(owner);
+        return entry == null ? 0 : entry.total;
+    }
+
+    public List<T> getByLevel(String level) {
+        ArrayList<T> items = new ArrayList<T>();
+
+        Dimension<T> dimension = findDimension(WorldUtils.getID(level));
+        if (dimension == null) return items;
+
+        ArrayList<Long> keys = new ArrayList<Long>();
+        dimension.counts.forEach((key, count) -> keys.add(key));
+        for (long key : keys) {
+            items.addAll(getRegion(level, unpackX(key), unpackZ(key)).items.values());
+        }
+        return items;
+    }
+
+    public Set<UUID> getOwners() {
+        return new HashSet<UUID>(index.keySet());
+    }
+
+    public Set<String> getLevels() {
+        HashSet<String> levels = new HashSet<String>();
+        for (Dimension<T> dimension : dimensions) {
+            if (dimension != null && !dimension.counts.isEmpty()) levels.add(dimension.level);
+        }
+        return levels;
+    }
+
+    /**
+     * Reads every region and checks the index and each region's per-owner groups against the items actually
+     * stored, rebuilding whichever disagrees. Meant for audits, as it reads the whole store.
+     * @return How many owners and regions were out of sync
+     */
+    public int verify() {
+        ArrayList<Region<T>> all = new ArrayList<Region<T>>();
+        for (Dimension<T> dimension : dimensions) {
+            if (dimension == null) continue;
+
+            ArrayList<Long> keys = new ArrayList<Long>();
+            dimension.counts.forEach((key, count) -> keys.add(key));
+            dimension.regions.forEach((key, region) -> {
+                if (!dimension.counts.containsKey(key)) keys.add(key);
+            });
+            keys.forEach(key -> all.add(getRegion(dimension.level, unpackX(key), unpackZ(key))));
+        }
+
+        int problems = 0;
+        HashMap<UUID, Owner> actual = new HashMap<UUID, Owner>();
+        for (Region<T> region : all) {
+            HashMap<UUID, LongObjectMap<T>> byOwner = new HashMap<UUID, LongObjectMap<T>>();
+            region.items.forEach((key, item) -> {
+                UUID owner = getOwner.apply(item);
+                byOwner.computeIfAbsent(owner, id -> new LongObjectMap<T>()).put(key, item);
+
+                Owner entry = actual.computeIfAbsent(owner, id -> new Owner());
+                entry.regions.merge(region.pos, 1, Integer::sum);
+                entry.total++;
+            });
+
+            if (!sameGroups(region.byOwner, byOwner)) {
+                FactionsMod.LOGGER.warn("Owner groups of region {} in {} were out of sync", region.pos, name);
+                region.byOwner.clear();
+                region.byOwner.putAll(byOwner);
+                problems++;
+            }
+        }
+
+        HashSet<UUID> owners = new HashSet<UUID>(index.keySet());
+        owners.addAll(actual.keySet());
+        for (UUID owner : owners) {
+            Owner indexed = index.get(owner);
+            Owner counted = actual.get(owner);
+            if (indexed == null || counted == null || indexed.total != counted.total || !indexed.regions.equals(counted.regions)) {
+                FactionsMod.LOGGER.warn("Index entry of {} in {} was out of sync", owner, name);
+                problems++;
+            }
+        }
+
+        if (problems > 0) {
+            index.clear();
+            index.putAll(actual);
+            for (Dimension<T> dimension : dimensions) {
+                if (dimension != null) dimension.counts.clear();
+            }
+            actual.values().forEach(entry -> entry.regions.forEach((pos, count) -> getDimension(pos.level).counts.put(pack(pos.x, pos.z), count)));
+            changedOwners.addAll(owners);
+        }
+
+        return problems;
+    }
+
+    /**
+     * Starts publishing views. The first one reads every region once, the ones only read for it are dropped
+     * again like any other unused region.
+     */
+    public void enableSnapshots() {
+        if (snapshots) return;
+
+        snapshots = true;
+        unpublishAll();
+    }
+
+    /**
+     * Publishes a new view if anything changed since the last one, only to be called from the thread that writes the store
+     */
+    public void publish() {
+        if (!snapshots || unpublished.isEmpty()) return;
+
+        for (RegionPos pos : unpublished) {
+            Region<T> region = findRegion(findDimension(WorldUtils.getID(pos.level)), pos.x, pos.z);
+            if (region == null || region.items.isEmpty()) {
+                published.remove(pos);
+                continue;
+            }
+
+            long[] positions = new long[region.items.size()];
+            int[] count = {0};
+            region.items.forEach((key, item) -> positions[count[0]++] = key);
+            Arrays.sort(positions);
+
+            UUID[] owners = new UUID[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                owners[i] = getOwner.apply(region.items.get(positions[i]));
+            }
+            published.put(pos, new Chunks(positions, owners));
+        }
+        unpublished.clear();
+
+        view = new View(Map.copyOf(published), view.version + 1);
+    }
+
+    /**
+     * @return The last published view, empty until snapshots are enabled and published
+     */
+    public View getView() {
+        return view;
+    }
+
+    /**
+     * Writes every changed region and the index entries of every owner whose counts changed, then drops
+     * unchanged regions that have not been used for a while
+     * @return Whether everything was written, or queued for writing
+     */
+    public boolean save() {
+        HashMap<RegionPos, Collection<T>> changed = new HashMap<RegionPos, Collection<T>>();
+        ArrayList<Region<T>> saving = new ArrayList<Region<T>>();
+        for (Dimension<T> dimension : dimensions) {
+            if (dimension == null) continue;
+            dimension.regions.forEach((key, region) -> {
+                if (!region.dirty) return;
+                changed.put(region.pos, region.items.values());
+                saving.add(region);
+            });
+        }
+
+        HashMap<UUID, List<IndexEntry>> entries = new HashMap<UUID, List<IndexEntry>>();
+        for (UUID owner : changedOwners) {
+            ArrayList<IndexEntry> owned = new ArrayList<IndexEntry>();
+            Owner entry = index.get(owner);
+            if (entry != null) entry.regions.forEach((pos, count) -> owned.add(new IndexEntry(pos, owner, count)));
+            entries.put(owner, owned);
+        }
+
+        boolean saved = (changed.isEmpty() && entries.isEmpty()) || persistence.write(changed, entries);
+        if (saved) {
+            saving.forEach(region -> region.dirty = false);
+            changedOwners.clear();
+        }
+
+        generation++;
+        for (Dimension<T> dimension : dimensions) {
+            if (dimension != null) dimension.regions.removeIf(region -> !region.dirty && generation - region.lastUsed > EVICT_AFTER_SAVES);
+        }
+
+        return saved;
+    }
+
+    private void changed(Region<T> region) {
+        region.dirty = true;
+        if (snapshots) unpublished.add(region.pos);
+    }
+
+    private void unpublishAll() {
+        for (Dimension<T> dimension : dimensions) {
+            if (dimension == null) continue;
+
+            dimension.counts.forEach((key, count) -> unpublished.add(new RegionPos(dimension.level, unpackX(key), unpackZ(key))));
+            dimension.regions.forEach((key, region) -> unpublished.add(region.pos));
+        }
+    }
+
+    /**
+     * @return The region, read first if needed, or null if there is nothing in it
+     */
+    private Region<T> findRegion(Dimension<T> dimension, int regionX, int regionZ) {
+        if (dimension == null) return null;
+
+        long key = pack(regionX, regionZ);
+        Region<T> region = dimension.regions.get(key);
+        if (region == null) {
+            if (!dimension.counts.containsKey(key)) return null;
+            region = readRegion(dimension, key, new RegionPos(dimension.level, regionX, regionZ));
+        }
+
+        region.lastUsed = generation;
+        return region;
+    }
+
+    private Region<T> getRegion(String level, int regionX, int regionZ) {
+        Dimension<T> dimension = getDimension(level);
+        Region<T> region = findRegion(dimension, regionX, regionZ);
+        if (region != null) return region;
+
+        region = new Region<T>(new RegionPos(dimension.level, regionX, regionZ));
+        region.lastUsed = generation;
+        dimension.regions.put(pack(regionX, regionZ), region);
+        return region;
+    }
+
+    private Region<T> readRegion(Dimension<T> dimension, long key, RegionPos pos) {
+        Region<T> region = new Region<T>(pos);
+        RegionData<T> data = persistence.readRegion(pos);
+        for (T item : data.items()) {
+            int x = getX.applyAsInt(item);
+            int z = getZ.applyAsInt(item);
+            long itemKey = pack(x, z);
+            region.items.put(itemKey, item);
+            addToOwner(region, itemKey, item);
+            region.setOccupied(x, z, true);
+        }
+        region.dirty = data.outdated();
+
+        dimension.regions.put(key, region);
+        return region;
+    }
+
+    private Dimension<T> findDimension(int level) {
+        return level < dimensions.size() ? dimensions.get(level) : null;
+    }
+
+    private Dimension<T> getDimension(String level) {
+        int id = WorldUtils.getID(level);
+        while (dimensions.size() <= id) dimensions.add(null);
+
+        Dimension<T> dimension = dimensions.get(id);
+        if (dimension == null) {
+            dimension = new Dimension<T>(WorldUtils.getLevel(id));
+            dimensions.set(id, dimension);
+        }
+        return dimension;
+    }
+
+    private void count(UUID owner, RegionPos pos, int delta) {
+        Owner entry = index.computeIfAbsent(owner, key -> new Owner());
+        if (entry.regions.merge(pos, delta, Integer::sum) <= 0) entry.regions.remove(pos);
+        entry.total += delta;
+        if (entry.regions.isEmpty()) index.remove(owner);
+
+        Dimension<T> dimension = getDimension(pos.level);
+        long key = pack(pos.x, pos.z);
+        Integer total = dimension.counts.get(key);
+        int updated = (total == null ? 0 : total) + delta;
+        if (updated <= 0) {
+            dimension.counts.remove(key);
+        } else {
+            dimension.counts.put(key, updated);
+        }
+        changedOwners.add(owner);
+    }
+
+    private void addToOwner(Region<T> region, long key, T item) {
+        region.byOwner.computeIfAbsent(getOwner.apply(item), owner -> new LongObjectMap<T>()).put(key, item);
+    }
+
+    private void removeFromOwner(Region<T> region, long key, T item) {
+        UUID owner = getOwner.apply(item);
+        LongObjectMap<T> owned = region.byOwner.get(owner);
+        if (owned == null) return;
+
+        owned.remove(key);
+        if (owned.isEmpty()) region.byOwner.remove(owner);
+    }
+
+    private boolean sameGroups(HashMap<UUID, LongObjectMap<T>> groups, HashMap<UUID, LongObjectMap<T>> expected) {
+        if (!groups.keySet().equals(expected.keySet())) return false;
+
+        for (Map.Entry<UUID, LongObjectMap<T>> entry : expected.entrySet()) {
+            LongObjectMap<T> group = groups.get(entry.getKey());
+            if (group.size() != entry.getValue().size()) return false;
+
+            boolean[] same = {true};
+            entry.getValue().forEach((key, item) -> same[0] &= group.get(key) == item);
+            if (!same[0]) return false;
+        }
+        return true;
+    }
+
+    RegionPos getRegionPos(T item) {
+        return getRegionPos(getLevel.apply(item), getX.applyAsInt(item), getZ.applyAsInt(item));
+    }
+
+    static RegionPos getRegionPos(String level, int x, int z) {
+        return new RegionPos(level, x >> REGION_SHIFT, z >> REGION_SHIFT);
+    }
+
+    /**
+     * Packs chunk or region coordinates the same way as {@link ChunkPos#toLong(int, int)}
+     */
+    private static long pack(int x, int z) {
+        return ChunkPos.toLong(x, z);
+    }
+
+    private static int unpackX(long key) {
+        return (int) key;
+    }
+
+    private static int unpackZ(long key) {
+        return (int) (key >>> 32);
+    }
+}
@@ -0,0 +1,33 @@
+package io.icker.factions.database;
+
+import net.minecraft.inventory.SimpleInventory;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+
+import java.util.UUID;
+
+/**
+ * Keeps each faction safe as its own record in the safes table, so a safe is only decoded when
+ * it is opened and only written when its contents change
+ */
+public class SafeStore {
+    private static final String TABLE = "safes";
+    private static final String KEY = "Items";
+
+    public static SimpleInventory load(UUID factionID) {
+        NbtCompound data = Database.getBackend().read(TABLE, factionID.toString());
+        NbtList items = data != null ? data.getList(KEY, NbtElement.COMPOUND_TYPE) : new NbtList();
+        return SerializerRegistry.fromNbtElement(SimpleInventory.class, items);
+    }
+
+    public static boolean save(UUID factionID, SimpleInventory safe) {
+        NbtCompound data = new NbtCompound();
+        data.put(KEY, SerializerRegistry.toNbtElement(SimpleInventory.class, safe));
+        return Database.getBackend().write(TABLE, factionID.toString(), data);
+    }
+
+    public static void delete(UUID factionID) {
+        Database.getBackend().delete(TABLE, factionID.toString());
+    }
+}
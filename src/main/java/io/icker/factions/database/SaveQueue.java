@@ -0,0 +1,135 @@
+package io.icker.factions.database;
+
+import io.icker.factions.FactionsMod;
+import net.minecraft.nbt.NbtCompound;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Writes database snapshots on a background thread. A snapshot queued for a file that
+ * still has an unwritten one replaces it, so overlapping saves only write the newest state.
+ * A snapshot stays queued until it is on disk, so readers can use {@link #get} instead of a stale file.
+ * Snapshots are either NBT trees, compressed on the save thread, bytes already encoded by the caller, or
+ * copies of records that are only turned into NBT on the save thread.
+ */
+public class SaveQueue {
+    private static final ConcurrentHashMap<File, Object> PENDING = new ConcurrentHashMap<File, Object>();
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Factions Save");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SaveQueue::flush, "Factions Save Shutdown"));
+    }
+
+    public static void submit(File file, NbtCompound data) {
+        PENDING.put(file, data);
+        EXECUTOR.execute(() -> write(file));
+    }
+
+    public static void submit(File file, byte[] data) {
+        PENDING.put(file, data);
+        EXECUTOR.execute(() -> write(file));
+    }
+
+    /**
+     * @param data Builds the NBT tree on the save thread, from state that must no longer change, or returns null if it cannot
+     */
+    public static void submit(File file, Supplier<NbtCompound> data) {
+        PENDING.put(file, data);
+        EXECUTOR.execute(() -> write(file));
+    }
+
+    /**
+     * @return The newest NBT snapshot of the file that has not been written yet, or null
+     */
+    public static NbtCompound get(File file) {
+        Object data = PENDING.get(file);
+        if (data instanceof Supplier<?> deferred) return (NbtCompound) deferred.get();
+        return data instanceof NbtCompound compound ? compound : null;
+    }
+
+    /**
+     * @return The newest encoded snapshot of the file that has not been written yet, or null
+     */
+    public static byte[] getBytes(File file) {
+        return PENDING.get(file) instanceof byte[] data ? data : null;
+    }
+
+    /**
+     * Drops any queued snapshot of the file and deletes it on the save thread, after a write that may already be in progress
+     */
+    public static void delete(File file) {
+        PENDING.remove(file);
+        EXECUTOR.execute(() -> {
+            if (!PENDING.containsKey(file) && file.exists() && !file.delete()) {
+                FactionsMod.LOGGER.warn("Failed to delete file ({})", file);
+            }
+        });
+    }
+
+    private static void write(File file) {
+        // an earlier task may have already written the newest snapshot
+        Object data = PENDING.get(file);
+        if (data == null) return;
+
+        // on failure the snapshot stays queued, so a later save or the shutdown flush retries it
+        if (write(file, data)) {
+            PENDING.remove(file, data);
+        }
+    }
+
+    private static boolean write(File file, Object data) {
+        if (data instanceof byte[] bytes) return Database.write(file, bytes);
+
+        NbtCompound compound = data instanceof Supplier<?> deferred ? (NbtCompound) deferred.get() : (NbtCompound) data;
+        return compound != null && Database.write(file, compound);
+    }
+
+    /**
+     * Runs the task on the save thread once every snapshot queued so far has been written, unless one of their
+     * files has an unwritten snapshot again by then, because writing it failed or it was queued again since.
+     * Snapshots of other files queued after this call do not hold the task back.
+     */
+    public static void then(Runnable task) {
+        Set<File> files = Set.copyOf(PENDING.keySet());
+        EXECUTOR.execute(() -> {
+            for (File file : files) {
+                if (PENDING.containsKey(file)) return;
+            }
+            task.run();
+        });
+    }
+
+    /**
+     * Blocks until every snapshot queued so far has been written
+     * @return Whether all of them were written, the ones that failed stay queued for the next save
+     */
+    public static boolean flush() {
+        try {
+            EXECUTOR.submit(() -> {}).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            FactionsMod.LOGGER.error("Timed out waiting for queued factions data to be written", e);
+        }
+
+        boolean written = true;
+        for (Map.Entry<File, Object> entry : PENDING.entrySet()) {
+            if (PENDING.remove(entry.getKey(), entry.getValue()) && !write(entry.getKey(), entry.getValue())) {
+                PENDING.putIfAbsent(entry.getKey(), entry.getValue());
+                written = false;
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,44 @@
+package io.icker.factions.database;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Immutable copy of a store that other threads can read without locking. The server thread marks it
+ * stale whenever the store changes and publishes a new copy at most once a tick, readers always see the
+ * last published copy as a whole. The values are only as safe to read as they are immutable, so they
+ * should be records taken while publishing rather than the live items of the store.
+ */
+public class Snapshot<K, V> {
+    private volatile Map<K, V> view = Map.of();
+    private volatile long version = 0;
+    private boolean stale = true;
+
+    public void markStale() {
+        stale = true;
+    }
+
+    /**
+     * Copies the store if it changed since the last publish, only to be called from the thread that writes it
+     * @return Whether a new copy was published
+     */
+    public boolean publish(Supplier<Map<K, V>> source) {
+        if (!stale) return false;
+
+        stale = false;
+        view = Map.copyOf(source.get());
+        version++;
+        return true;
+    }
+
+    public Map<K, V> get() {
+        return view;
+    }
+
+    /**
+     * @return How many copies were published, so readers can tell whether anything changed since they last looked
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,385 @@
+package io.icker.factions.database;
+
+import io.icker.factions.FactionsMod;
+import io.icker.factions.database.RegionStore.IndexEntry;
+import io.icker.factions.database.RegionStore.RegionData;
+import io.icker.factions.database.RegionStore.RegionPos;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+
+import java.io.*;
+import java.sql.*;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Keeps everything in a single SQLite database, factions/factions.db. Stores and keyed tables are
+ * (id, data) tables holding one uncompressed NBT record per row, claims get a table keyed by
+ * (level, x, z) with an index on the owning faction. Saves only touch the rows that changed and
+ * commit them in one transaction per store. Any table that is created empty is filled from the
+ * NBT files once, which are left in place.
+ */
+class SqliteBackend implements StorageBackend {
+    private final Connection connection;
+    private final HashSet<String> tables = new HashSet<String>();
+
+    private SqliteBackend(Connection connection) {
+        this.connection = connection;
+    }
+
+    static StorageBackend open(File file) {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            if (!Database.BASE_PATH.exists()) Database.BASE_PATH.mkdir();
+
+            Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+            }
+            connection.setAutoCommit(false);
+            return new SqliteBackend(connection);
+        } catch (ClassNotFoundException | SQLException e) {
+            FactionsMod.LOGGER.error("Failed to open SQLite database ({}), falling back to NBT files", file, e);
+            return Database.FILES;
+        }
+    }
+
+    @Override
+    public synchronized <T, E> List<T> loadAll(Class<T> clazz, Function<T, E> getStoreKey) {
+        String table = getTable(clazz);
+        ArrayList<T> items = new ArrayList<T>();
+
+        try {
+            if (createTable(table)) {
+                List<T> imported = Database.FILES.loadAll(clazz, getStoreKey);
+                insert(table, clazz, getStoreKey, imported);
+                return new ArrayList<T>(imported);
+            }
+
+            try (Statement statement = connection.createStatement(); ResultSet rows = statement.executeQuery("SELECT data FROM \"" + table + "\"")) {
+                while (rows.next()) {
+                    items.add(Database.decode(clazz, rows.getBytes(1)));
+                }
+            }
+        } catch (SQLException | IOException | ReflectiveOperationException e) {
+            FactionsMod.LOGGER.error("Failed to load table ({})", table, e);
+        }
+
+        return items;
+    }
+
+    @Override
+    public synchronized <T, E> boolean saveAll(Class<T> clazz, Function<T, E> getStoreKey, Collection<T> items, DirtyTracker<T> dirty) {
+        String table = getTable(clazz);
+
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM \"" + table + "\" WHERE id = ?");
+             PreparedStatement upsert = connection.prepareStatement("INSERT OR REPLACE INTO \"" + table + "\" (id, data) VALUES (?, ?)")) {
+            for (T item : dirty.getRemoved()) {
+                delete.setString(1, getStoreKey.apply(item).toString());
+                delete.addBatch();
+            }
+            for (T item : dirty.getChanged()) {
+                upsert.setString(1, getStoreKey.apply(item).toString());
+                upsert.setBytes(2, Database.encode(clazz, item));
+                upsert.addBatch();
+            }
+
+            delete.executeBatch();
+            upsert.executeBatch();
+            connection.commit();
+            return true;
+        } catch (SQLException | IOException | ReflectiveOperationException e) {
+            FactionsMod.LOGGER.error("Failed to save table ({})", table, e);
+            rollback();
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized NbtCompound read(String table, String key) {
+        try {
+            if (createTable(table)) importRecords(table);
+
+            try (PreparedStatement select = connection.prepareStatement("SELECT data FROM \"" + table + "\" WHERE id = ?")) {
+                select.setString(1, key);
+                try (ResultSet rows = select.executeQuery()) {
+                    if (!rows.next()) return null;
+                    return NbtIo.read(new DataInputStream(new ByteArrayInputStream(rows.getBytes(1))));
+                }
+            }
+        } catch (SQLException | IOException e) {
+            FactionsMod.LOGGER.error("Failed to read record ({}/{})", table, key, e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized boolean write(String table, String key, NbtCompound data) {
+        try {
+            if (createTable(table)) importRecords(table);
+
+            try (PreparedStatement upsert = connection.prepareStatement("INSERT OR REPLACE INTO \"" + table + "\" (id, data) VALUES (?, ?)")) {
+                upsert.setString(1, key);
+                upsert.setBytes(2, toBytes(data));
+                upsert.executeUpdate();
+            }
+            connection.commit();
+            return true;
+        } catch (SQLException | IOException e) {
+            FactionsMod.LOGGER.error("Failed to write record ({}/{})", table, key, e);
+            rollback();
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void delete(String table, String key) {
+        try {
+            if (createTable(table)) importRecords(table);
+
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM \"" + table + "\" WHERE id = ?")) {
+                delete.setString(1, key);
+                delete.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            FactionsMod.LOGGER.error("Failed to delete record ({}/{})", table, key, e);
+            rollback();
+        }
+    }
+
+    @Override
+    public synchronized <T> RegionStore.Persistence<T> getRegions(RegionStore<T> store) {
+        RegionTable<T> regions = new RegionTable<T>(store);
+
+        try {
+            if (regions.createTable()) {
+                regions.insert(new RegionFiles<T>(store).readAll());
+            }
+        } catch (SQLException | IOException | ReflectiveOperationException e) {
+            FactionsMod.LOGGER.error("Failed to create region table ({})", store.name, e);
+            rollback();
+        }
+
+        return regions;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            FactionsMod.LOGGER.error("Failed to close SQLite database", e);
+        }
+    }
+
+    /**
+     * Creates the (id, data) table if it does not exist yet
+     * @return Whether it was created, in which case it still has to be filled from the NBT files
+     */
+    private boolean createTable(String table) throws SQLException {
+        if (tables.contains(table)) return false;
+
+        boolean exists;
+        try (PreparedStatement select = connection.prepareStatement("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            select.setString(1, table);
+            try (ResultSet rows = select.executeQuery()) {
+                exists = rows.next();
+            }
+        }
+
+        if (!exists) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE \"" + table + "\" (id TEXT PRIMARY KEY, data BLOB NOT NULL)");
+            }
+            connection.commit();
+        }
+
+        tables.add(table);
+        return !exists;
+    }
+
+    private <T, E> void insert(String table, Class<T> clazz, Function<T, E> getStoreKey, Collection<T> items) throws SQLException, IOException, ReflectiveOperationException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT OR REPLACE INTO \"" + table + "\" (id, data) VALUES (?, ?)")) {
+            for (T item : items) {
+                insert.setString(1, getStoreKey.apply(item).toString());
+                insert.setBytes(2, Database.encode(clazz, item));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+
+        if (!items.isEmpty()) FactionsMod.LOGGER.info("Imported {} entries into the {} table", items.size(), table);
+    }
+
+    private void importRecords(String table) throws SQLException, IOException {
+        List<String> keys = Database.FILES.getKeys(table);
+
+        try (PreparedStatement insert = connection.prepareStatement("INSERT OR REPLACE INTO \"" + table + "\" (id, data) VALUES (?, ?)")) {
+            for (String key : keys) {
+                NbtCompound data = Database.FILES.read(table, key);
+                if (data == null) continue;
+
+                insert.setString(1, key);
+                insert.setBytes(2, toBytes(data));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+
+        if (!keys.isEmpty()) FactionsMod.LOGGER.info("Imported {} entries into the {} table", keys.size(), table);
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            FactionsMod.LOGGER.error("Failed to roll back SQLite transaction", e);
+        }
+    }
+
+    private static String getTable(Class<?> clazz) {
+        return clazz.getAnnotation(Name.class).value().toLowerCase();
+    }
+
+    private static byte[] toBytes(NbtCompound data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NbtIo.write(data, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Claims as rows keyed by (level, x, z) with an index on the owner. A region is read with a
+     * range query on the primary key and written by replacing its rows in the save's transaction.
+     */
+    private class RegionTable<T> implements RegionStore.Persistence<T> {
+        private final RegionStore<T> store;
+        private final String table;
+
+        RegionTable(RegionStore<T> store) {
+            this.store = store;
+            this.table = store.name;
+        }
+
+        boolean createTable() throws SQLException {
+            boolean exists;
+            try (PreparedStatement select = connection.prepareStatement("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+                select.setString(1, table);
+                try (ResultSet rows = select.executeQuery()) {
+                    exists = rows.next();
+                }
+            }
+            if (exists) return false;
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE \"" + table + "\" (level TEXT NOT NULL, x INTEGER NOT NULL, z INTEGER NOT NULL, owner TEXT NOT NULL, data BLOB NOT NULL, PRIMARY KEY (level, x, z))");
+                statement.execute("CREATE INDEX \"" + table + "_owner\" ON \"" + table + "\" (owner)");
+            }
+            connection.commit();
+            return true;
+        }
+
+        void insert(Collection<T> items) throws SQLException, IOException, ReflectiveOperationException {
+            try (PreparedStatement insert = prepareInsert()) {
+                for (T item : items) {
+                    bindInsert(insert, item);
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+
+            if (!items.isEmpty()) FactionsMod.LOGGER.info("Imported {} entries into the {} table", items.size(), table);
+        }
+
+        @Override
+        public List<IndexEntry> readIndex() {
+            synchronized (SqliteBackend.this) {
+                ArrayList<IndexEntry> entries = new ArrayList<IndexEntry>();
+                String shift = Integer.toString(RegionStore.REGION_SHIFT);
+
+                try (Statement statement = connection.createStatement();
+                     ResultSet rows = statement.executeQuery("SELECT level, x >> " + shift + ", z >> " + shift + ", owner, COUNT(*) FROM \"" + table + "\" GROUP BY 1, 2, 3, 4")) {
+                    while (rows.next()) {
+                        RegionPos pos = new RegionPos(rows.getString(1), rows.getInt(2), rows.getInt(3));
+                        entries.add(new IndexEntry(pos, UUID.fromString(rows.getString(4)), rows.getInt(5)));
+                    }
+                } catch (SQLException e) {
+                    FactionsMod.LOGGER.error("Failed to read region index ({})", table, e);
+                }
+
+                return entries;
+            }
+        }
+
+        @Override
+        public RegionData<T> readRegion(RegionPos pos) {
+            synchronized (SqliteBackend.this) {
+                ArrayList<T> items = new ArrayList<T>();
+
+                try (PreparedStatement select = connection.prepareStatement("SELECT data FROM \"" + table + "\" WHERE level = ? AND x BETWEEN ? AND ? AND z BETWEEN ? AND ?")) {
+                    bindRegion(select, pos);
+                    try (ResultSet rows = select.executeQuery()) {
+                        while (rows.next()) {
+                            items.add(Database.decode(store.clazz, rows.getBytes(1)));
+                        }
+                    }
+                } catch (SQLException | IOException | ReflectiveOperationException e) {
+                    FactionsMod.LOGGER.error("Failed to read region ({} {})", table, pos, e);
+                }
+
+                return new RegionData<T>(items, false);
+            }
+        }
+
+        @Override
+        public boolean write(Map<RegionPos, Collection<T>> regions, Map<UUID, List<IndexEntry>> index) {
+            synchronized (SqliteBackend.this) {
+                try (PreparedStatement delete = connection.prepareStatement("DELETE FROM \"" + table + "\" WHERE level = ? AND x BETWEEN ? AND ? AND z BETWEEN ? AND ?");
+                     PreparedStatement insert = prepareInsert()) {
+                    for (Map.Entry<RegionPos, Collection<T>> region : regions.entrySet()) {
+                        bindRegion(delete, region.getKey());
+                        delete.addBatch();
+
+                        for (T item : region.getValue()) {
+                            bindInsert(insert, item);
+                        }
+                    }
+
+                    delete.executeBatch();
+                    insert.executeBatch();
+                    connection.commit();
+                    return true;
+                } catch (SQLException | IOException | ReflectiveOperationException e) {
+                    FactionsMod.LOGGER.error("Failed to save regions ({})", table, e);
+                    rollback();
+                    return false;
+                }
+            }
+        }
+
+        private PreparedStatement prepareInsert() throws SQLException {
+            return connection.prepareStatement("INSERT OR REPLACE INTO \"" + table + "\" (level, x, z, owner, data) VALUES (?, ?, ?, ?, ?)");
+        }
+
+        private void bindInsert(PreparedStatement insert, T item) throws SQLException, IOException, ReflectiveOperationException {
+            insert.setString(1, store.getLevel.apply(item));
+            insert.setInt(2, store.getX.applyAsInt(item));
+            insert.setInt(3, store.getZ.applyAsInt(item));
+            insert.setString(4, store.getOwner.apply(item).toString());
+            insert.setBytes(5, Database.encode(store.clazz, item));
+            insert.addBatch();
+        }
+
+        private void bindRegion(PreparedStatement statement, RegionPos pos) throws SQLException {
+            int size = 1 << RegionStore.REGION_SHIFT;
+            statement.setString(1, pos.level());
+            statement.setInt(2, pos.x() * size);
+            statement.setInt(3, pos.x() * size + size - 1);
+            statement.setInt(4, pos.z() * size);
+            statement.setInt(5, pos.z() * size + size - 1);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.icker.factions.database;
+
+import net.minecraft.nbt.NbtCompound;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Where the persistent stores are kept. The stores themselves stay in memory, a backend is asked for
+ * whole stores on startup, for single records and claim regions on demand, and to persist what changed
+ * since the last save.
+ */
+interface StorageBackend {
+    <T, E> List<T> loadAll(Class<T> clazz, Function<T, E> getStoreKey);
+
+    /**
+     * @param items Every item of the store
+     * @param dirty What changed since the last save, cleared by the caller once this succeeds
+     */
+    <T, E> boolean saveAll(Class<T> clazz, Function<T, E> getStoreKey, Collection<T> items, DirtyTracker<T> dirty);
+
+    /**
+     * @return The record, or null if there is none
+     */
+    NbtCompound read(String table, String key);
+
+    boolean write(String table, String key, NbtCompound data);
+
+    void delete(String table, String key);
+
+    <T> RegionStore.Persistence<T> getRegions(RegionStore<T> store);
+
+    void close();
+}
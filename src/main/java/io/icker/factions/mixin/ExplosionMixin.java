@@ -0,0 +1,27 @@
+package io.icker.factions.mixin;
+
+import io.icker.factions.core.InteractionManager;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.explosion.Explosion;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(Explosion.class)
+public class ExplosionMixin {
+    @Shadow @Final private World world;
+    @Shadow @Final private double x;
+    @Shadow @Final private double y;
+    @Shadow @Final private double z;
+
+    @Inject(method = "affectBlocks", at = @At("HEAD"))
+    public void affectBlocks(boolean particles, CallbackInfo info) {
+        if (world.isClient) return;
+
+        InteractionManager.filterProtected(world, new BlockPos(x, y, z), ((Explosion) (Object) this).getAffectedBlocks());
+    }
+}
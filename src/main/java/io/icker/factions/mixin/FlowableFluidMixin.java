@@ -0,0 +1,26 @@
+package io.icker.factions.mixin;
+
+import io.icker.factions.core.InteractionManager;
+import net.minecraft.block.BlockState;
+import net.minecraft.fluid.FlowableFluid;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldAccess;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(FlowableFluid.class)
+public class FlowableFluidMixin {
+    @Inject(method = "flow", at = @At("HEAD"), cancellable = true)
+    public void flow(WorldAccess world, BlockPos pos, BlockState state, Direction direction, FluidState fluidState, CallbackInfo info) {
+        if (!(world instanceof World level) || level.isClient) return;
+
+        if (InteractionManager.isProtected(level, pos.offset(direction.getOpposite()), pos)) {
+            info.cancel();
+        }
+    }
+}
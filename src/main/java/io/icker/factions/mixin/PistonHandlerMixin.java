@@ -0,0 +1,42 @@
+package io.icker.factions.mixin;
+
+import io.icker.factions.core.InteractionManager;
+import net.minecraft.block.piston.PistonHandler;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.World;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Mixin(PistonHandler.class)
+public class PistonHandlerMixin {
+    @Shadow @Final private World world;
+    @Shadow @Final private BlockPos posFrom;
+    @Shadow @Final private Direction motionDirection;
+    @Shadow @Final private List<BlockPos> movedBlocks;
+    @Shadow @Final private List<BlockPos> brokenBlocks;
+
+    @Inject(method = "calculatePush", at = @At("RETURN"), cancellable = true)
+    public void calculatePush(CallbackInfoReturnable<Boolean> info) {
+        if (world.isClient || !info.getReturnValue()) return;
+
+        // the piston moves everything or nothing, so it is blocked if any block would leave or enter protected land
+        ArrayList<BlockPos> affected = new ArrayList<BlockPos>(movedBlocks.size() * 2 + brokenBlocks.size());
+        for (BlockPos pos : movedBlocks) {
+            affected.add(pos);
+            affected.add(pos.offset(motionDirection));
+        }
+        affected.addAll(brokenBlocks);
+
+        if (InteractionManager.isAnyProtected(world, posFrom, affected)) {
+            info.setReturnValue(false);
+        }
+    }
+}
@@ -14,6 +14,7 @@ import net.minecraft.util.UserCache;
 
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 
 
@@ -80,13 +81,7 @@ public interface Command {
         }
 
         static SuggestionProvider<ServerCommandSource> allFactions(boolean includeYou) {
-            return suggest(user -> 
-                Faction.all()
-                    .stream()
-                    .filter(f -> includeYou || !user.isInFaction() || !user.getFaction().getID().equals(f.getID()))
-                    .map(Faction::getName)
-                    .toArray(String[]::new)
-            );
+            return suggestFactions((user, f) -> includeYou || !user.isInFaction() || !user.getFaction().getID().equals(f.getID()));
         }
 
         static SuggestionProvider<ServerCommandSource> allPlayers() {
@@ -106,23 +101,27 @@ public interface Command {
         }
 
         static SuggestionProvider<ServerCommandSource> openFactions() {
-            return suggest(user ->
-                Faction.all()
-                    .stream()
-                    .filter(Faction::isOpen)
-                    .map(Faction::getName)
-                    .toArray(String[]::new)
-            );
+            return suggestFactions((user, f) -> f.isOpen());
         }
 
         static SuggestionProvider<ServerCommandSource> openInvitedFactions() {
-            return suggest(user ->
-                Faction.all()
-                    .stream()
-                    .filter(f -> f.isOpen() || f.isInvited(user.getID()))
-                    .map(Faction::getName)
-                    .toArray(String[]::new)
-            );
+            return suggestFactions((user, f) -> f.isOpen() || f.isInvited(user.getID()));
+        }
+
+        /**
+         * Suggests the factions whose name starts with what has been typed so far, found through the name index
+         */
+        static SuggestionProvider<ServerCommandSource> suggestFactions(BiPredicate<User, Faction> filter) {
+            return (context, builder) -> {
+                ServerPlayerEntity entity = context.getSource().getPlayer();
+                User user = User.get(entity.getUuid());
+
+                String typed = builder.getRemaining();
+                for (Faction faction : Faction.getByNamePrefix(typed.startsWith("\"") ? typed.substring(1) : typed)) {
+                    if (filter.test(user, faction)) builder.suggest(faction.getName());
+                }
+                return builder.buildFuture();
+            };
         }
 
         static <T extends Enum<T>> SuggestionProvider<ServerCommandSource> enumSuggestion (Class<T> clazz) {
@@ -0,0 +1,75 @@
+package io.icker.factions.util;
+
+import io.icker.factions.api.persistents.Relationship.Permissions;
+import net.minecraft.util.ActionResult;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * The last claim protection decisions of one player, by chunk and permission. Entries are only valid for
+ * the epoch they were made in, so every cache is dropped at once by bumping the epoch whenever claims,
+ * relationships, ranks, memberships or power change.
+ */
+public class DecisionCache {
+    private static final int SLOT_BITS = 6;
+    private static final int SIZE = 1 << SLOT_BITS;
+    private static final int PERMISSION_COUNT = Permissions.values().length;
+
+    private static int epoch = 1;
+    private static long lookups = 0;
+    private static long hits = 0;
+
+    private final long[] chunks = new long[SIZE];
+    private final int[] tags = new int[SIZE];
+    private final int[] epochs = new int[SIZE];
+    private final ActionResult[] decisions = new ActionResult[SIZE];
+
+    public static void invalidateAll() {
+        epoch++;
+    }
+
+    /**
+     * @return The cached decision, or null if there is none from the current epoch
+     */
+    public ActionResult get(int level, int x, int z, Permissions permission) {
+        lookups++;
+
+        long chunk = ChunkPos.toLong(x, z);
+        int tag = getTag(level, permission);
+        int slot = getSlot(chunk, tag);
+        if (epochs[slot] != epoch || chunks[slot] != chunk || tags[slot] != tag) return null;
+
+        hits++;
+        return decisions[slot];
+    }
+
+    public void put(int level, int x, int z, Permissions permission, ActionResult decision) {
+        long chunk = ChunkPos.toLong(x, z);
+        int tag = getTag(level, permission);
+        int slot = getSlot(chunk, tag);
+
+        chunks[slot] = chunk;
+        tags[slot] = tag;
+        epochs[slot] = epoch;
+        decisions[slot] = decision;
+    }
+
+    public static long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * @return The share of lookups answered from a cache since startup
+     */
+    public static double getHitRate() {
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private static int getTag(int level, Permissions permission) {
+        return level * PERMISSION_COUNT + permission.ordinal();
+    }
+
+    private static int getSlot(long chunk, int tag) {
+        long hash = (chunk ^ tag) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> (Long.SIZE - SLOT_BITS));
+    }
+}
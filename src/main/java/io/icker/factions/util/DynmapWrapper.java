@@ -6,6 +6,7 @@ import io.icker.factions.api.events.FactionEvents;
 import io.icker.factions.api.persistents.Claim;
 import io.icker.factions.api.persistents.Faction;
 import io.icker.factions.api.persistents.Home;
+import io.icker.factions.core.ServerManager;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.world.ServerWorld;
@@ -18,8 +19,12 @@ import org.dynmap.DynmapCommonAPIListener;
 import org.dynmap.markers.*;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
 
 public class DynmapWrapper {
     private DynmapCommonAPI api;
@@ -44,20 +49,27 @@ public class DynmapWrapper {
             }
         });
 
+        // dynmap enables the API from its own thread, so markers are generated from the snapshots
+        Faction.enableSnapshots();
+        Claim.enableSnapshots();
+
         ClaimEvents.ADD.register(this::addClaim);
         ClaimEvents.THE_OTHER_ADD.register(this::addClaim);
         ClaimEvents.REMOVE.register(this::removeClaim);
+        ClaimEvents.ADD_ALL.register(this::addClaims);
+        ClaimEvents.REMOVE_ALL.register(claims -> claims.forEach(claim -> removeClaim(claim.x, claim.z, claim.level, null)));
 
         ServerLifecycleEvents.SERVER_STARTED.register((server) -> {
             this.server = server;
             if (loadWhenReady) {
                 loadWhenReady = false;
 
+                ServerManager.publishSnapshots();
                 generateMarkers();
             }
         });
 
-        FactionEvents.SET_HOME.register(this::setHome);
+        FactionEvents.SET_HOME.register((faction, home) -> setHome(faction.summarize()));
         FactionEvents.MODIFY.register(faction -> updateFaction(faction));
         FactionEvents.MEMBER_JOIN.register((faction, user) -> updateFaction(faction));
         FactionEvents.MEMBER_LEAVE.register((faction, user) -> updateFaction(faction));
@@ -71,67 +83,87 @@ public class DynmapWrapper {
             return;
         }
 
-        for (Faction faction : Faction.all()) {
-            Home home = faction.getHome();
-            if (home != null) {
-                setHome(faction, home);
+        // only the published snapshots are read here, as this can run on dynmap's thread
+        Map<UUID, Faction.Summary> factions = Faction.snapshot();
+        HashMap<UUID, String> infos = new HashMap<UUID, String>();
+        Claim.snapshot().forEach((level, x, z, owner) -> {
+            Faction.Summary faction = factions.get(owner);
+            if (faction != null) {
+                addClaim(level, x, z, faction, infos.computeIfAbsent(owner, id -> getInfo(faction)));
             }
+        });
 
-            String info = getInfo(faction);
-            for (Claim claim : faction.getClaims()) {
-                addClaim(claim, info);
+        for (Faction.Summary faction : factions.values()) {
+            if (faction.home() != null) {
+                setHome(faction);
             }
         }
     }
 
-    private void addClaim(Claim claim, String factionInfo) {
-        Faction faction = claim.getFaction();
-        ChunkPos pos = new ChunkPos(claim.x, claim.z);
+    private void addClaim(String level, int x, int z, Faction.Summary faction, String factionInfo) {
+        ChunkPos pos = new ChunkPos(x, z);
 
         AreaMarker marker = markerSet.createAreaMarker(
-                claim.getKey(), factionInfo,
-                true, dimensionTagToID(claim.level),
+                getKey(level, x, z), factionInfo,
+                true, dimensionTagToID(level),
                 new double[]{pos.getStartX(), pos.getEndX() + 1},
                 new double[]{pos.getStartZ(), pos.getEndZ() + 1},
                 true
         );
         if (marker != null) {
-            marker.setFillStyle(marker.getFillOpacity(), faction.getColor().getColorValue());
-            marker.setLineStyle(marker.getLineWeight(), marker.getLineOpacity(), faction.getColor().getColorValue());
+            marker.setFillStyle(marker.getFillOpacity(), faction.color().getColorValue());
+            marker.setLineStyle(marker.getLineWeight(), marker.getLineOpacity(), faction.color().getColorValue());
         }
     }
 
     private void addClaim(Claim claim) {
-        addClaim(claim, getInfo(claim.getFaction()));
+        Faction.Summary faction = claim.getFaction().summarize();
+        addClaim(claim.level, claim.x, claim.z, faction, getInfo(faction));
+    }
+
+    private void addClaims(List<Claim> claims) {
+        HashMap<UUID, Faction.Summary> factions = new HashMap<UUID, Faction.Summary>();
+        HashMap<UUID, String> infos = new HashMap<UUID, String>();
+        for (Claim claim : claims) {
+            Faction.Summary faction = factions.computeIfAbsent(claim.factionID, id -> claim.getFaction().summarize());
+            addClaim(claim.level, claim.x, claim.z, faction, infos.computeIfAbsent(claim.factionID, id -> getInfo(faction)));
+        }
     }
 
     private void removeClaim(int x, int z, String level, Faction faction) {
-        String areaMarkerId = String.format("%s-%d-%d", level, x, z);
-        markerSet.findAreaMarker(areaMarkerId).deleteMarker();
+        markerSet.findAreaMarker(getKey(level, x, z)).deleteMarker();
     }
 
     private void updateFaction(Faction faction) {
-        String info = getInfo(faction);
+        Faction.Summary summary = faction.summarize();
+        String info = getInfo(summary);
 
         for (Claim claim : faction.getClaims()) {
             AreaMarker marker = markerSet.findAreaMarker(claim.getKey());
 
-            marker.setFillStyle(marker.getFillOpacity(), faction.getColor().getColorValue());
-            marker.setLineStyle(marker.getLineWeight(), marker.getLineOpacity(), faction.getColor().getColorValue());
+            marker.setFillStyle(marker.getFillOpacity(), summary.color().getColorValue());
+            marker.setLineStyle(marker.getLineWeight(), marker.getLineOpacity(), summary.color().getColorValue());
             marker.setDescription(info);
         }
     }
 
-    private void setHome(Faction faction, Home home) {
+    private void setHome(Faction.Summary faction) {
+        Home home = faction.home();
+        if (home == null) return;
+
         FactionsMod.LOGGER.info("Set home");
-        Marker marker = markerSet.findMarker(faction.getID().toString() + "-home");
+        Marker marker = markerSet.findMarker(faction.id().toString() + "-home");
         if (marker == null) {
-            markerSet.createMarker(faction.getID().toString() + "-home", faction.getName() + "'s Home", dimensionTagToID(home.level), home.x, home.y, home.z, null, true);
+            markerSet.createMarker(faction.id().toString() + "-home", faction.name() + "'s Home", dimensionTagToID(home.level), home.x, home.y, home.z, null, true);
         } else {
             marker.setLocation(dimensionTagToID(home.level), home.x, home.y, home.z);
         }
     }
 
+    private static String getKey(String level, int x, int z) {
+        return String.format("%s-%d-%d", level, x, z);
+    }
+
     public String getWorldName(World w) { // Taken from the Dynmap mod (Credit to them)
         RegistryKey<World> rk = w.getRegistryKey();
         if (rk == World.OVERWORLD) {
@@ -163,11 +195,11 @@ public class DynmapWrapper {
         return getWorldName(world);
     }
 
-    private String getInfo(Faction faction) {
-        return "Name: " + faction.getName() + "<br>"
-                + "Description: " + faction.getDescription() + "<br>"
-                // + "Power: " + faction.getPower() + "<br>"
-                + "Number of members: " + faction.getUsers().size();// + "<br>"
+    private String getInfo(Faction.Summary faction) {
+        return "Name: " + faction.name() + "<br>"
+                + "Description: " + faction.description() + "<br>"
+                // + "Power: " + faction.power() + "<br>"
+                + "Number of members: " + faction.memberCount();// + "<br>"
         //+ "Allies: " + Ally.getAllies(faction.getName).stream().map(ally -> ally.target).collect(Collectors.joining(", "));
     }
 
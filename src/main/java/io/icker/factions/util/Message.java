@@ -65,7 +65,7 @@ public class Message {
 
     public Message send(Faction faction) {
         Message message = this.prependFaction(faction);
-        for (User member : faction.getUsers()) {
+        for (User member : faction.getOnlineUsers()) {
             ServerPlayerEntity player = manager.getPlayer(member.getID());
             if (player != null) message.send(player, false);
         }
@@ -80,9 +80,9 @@ public class Message {
     }
 
     public void sendToFactionChat(Faction faction) {
-        for (User member : faction.getUsers()) {
+        for (User member : faction.getOnlineUsers()) {
             ServerPlayerEntity player = manager.getPlayer(member.getID());
-            player.sendMessage(text, false);
+            if (player != null) player.sendMessage(text, false);
         }
     }
 
@@ -187,7 +187,7 @@ public class PlaceholdersWrapper {
             final var faction = member.getFaction();
 
             if (faction != null)
-                r = "" + faction.getClaims().size() * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT;
+                r = "" + faction.getClaimCount() * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT;
 
             return value(r);
         });
@@ -204,7 +204,7 @@ public class PlaceholdersWrapper {
 
 
             if (faction != null) {
-                final int reqPower = faction.getClaims().size() * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT;
+                final int reqPower = faction.getClaimCount() * FactionsMod.CONFIG.POWER.CLAIM_WEIGHT;
                 final int red = mapBoundRange(0, faction.getPower(), 85, 255, reqPower);
                 r = Text.literal("" + reqPower).setStyle(Style.EMPTY.withColor(TextColor.parse("#" + toHexString(red) + "5555")));
             }
@@ -2,18 +2,83 @@ package io.icker.factions.util;
 
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
 
-import java.util.Objects;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Interns every dimension name it sees to a small ID that stays the same until the process exits, so hot
+ * paths can look dimensions up by array index instead of building and hashing identifier strings. Which of
+ * them exist on the running server is worked out once it has started.
+ */
 public class WorldUtils {
     public static MinecraftServer server;
 
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+    private static final ConcurrentHashMap<RegistryKey<World>, Integer> KEYS = new ConcurrentHashMap<RegistryKey<World>, Integer>();
+    private static volatile String[] levels = new String[0];
+    private static volatile boolean[] valid = new boolean[0];
+
     public static void register() {
-        ServerLifecycleEvents.SERVER_STARTED.register((server1 -> WorldUtils.server = server1));
+        ServerLifecycleEvents.SERVER_STARTING.register((server1 -> WorldUtils.server = server1));
+        ServerLifecycleEvents.SERVER_STARTED.register(server1 -> updateValid());
+        ServerLifecycleEvents.SERVER_STOPPED.register(server1 -> valid = new boolean[0]);
+    }
+
+    public static int getID(String level) {
+        Integer id = IDS.get(level);
+        return id != null ? id : assignID(level);
+    }
+
+    public static int getWorldID(World world) {
+        Integer id = KEYS.get(world.getRegistryKey());
+        if (id != null) return id;
+
+        id = getID(world.getRegistryKey().getValue().toString());
+        KEYS.put(world.getRegistryKey(), id);
+        return id;
+    }
+
+    public static String getLevel(int id) {
+        return levels[id];
+    }
+
+    /**
+     * @return The one shared instance of the dimension name
+     */
+    public static String intern(String level) {
+        return getLevel(getID(level));
+    }
+
+    public static boolean isValid(int id) {
+        boolean[] current = valid;
+        return id < current.length && current[id];
     }
 
     public static boolean isValid(String level) {
-        return WorldUtils.server.getWorldRegistryKeys().stream().anyMatch(key -> Objects.equals(key.getValue(), new Identifier(level)));
+        Integer id = IDS.get(level);
+        return id != null && isValid(id);
+    }
+
+    private static synchronized int assignID(String level) {
+        Integer existing = IDS.get(level);
+        if (existing != null) return existing;
+
+        int id = levels.length;
+        String[] updated = Arrays.copyOf(levels, id + 1);
+        updated[id] = level;
+        levels = updated;
+        IDS.put(level, id);
+        return id;
+    }
+
+    private static void updateValid() {
+        boolean[] updated = new boolean[levels.length + server.getWorldRegistryKeys().size()];
+        for (RegistryKey<World> key : server.getWorldRegistryKeys()) {
+            updated[getID(key.getValue().toString())] = true;
+        }
+        valid = updated;
     }
 }
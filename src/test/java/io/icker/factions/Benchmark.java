@@ -0,0 +1,61 @@
+package io.icker.factions;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the tests tagged {@link #TAG}, which are left out of gradle test and run with gradle benchmark
+ */
+public class Benchmark {
+    public static final String TAG = "benchmark";
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public record Result(String name, long operations, long nanos, long bytes) {
+        public double perSecond() {
+            return operations * 1e9 / nanos;
+        }
+
+        public double bytesPerOperation() {
+            return (double) bytes / operations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-40s %,14.0f ops/s %10.1f bytes/op", name, perSecond(), bytesPerOperation());
+        }
+    }
+
+    /**
+     * Runs the task a few times to warm up, then measures it on the calling thread and prints the result
+     * @param operations How many operations one run of the task does
+     * @return The fastest run, along with the fewest bytes a run allocated
+     */
+    public static Result measure(String name, long operations, Runnable task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+
+        long nanos = Long.MAX_VALUE;
+        long bytes = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long allocated = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            task.run();
+            nanos = Math.min(nanos, System.nanoTime() - start);
+            bytes = Math.min(bytes, THREADS.getCurrentThreadAllocatedBytes() - allocated);
+        }
+
+        Result result = new Result(name, operations, nanos, bytes);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Prints how many times faster the second result is
+     */
+    public static void compare(Result before, Result after) {
+        System.out.printf("%-40s %14.2fx%n", after.name() + " speedup", after.perSecond() / before.perSecond());
+    }
+}
@@ -0,0 +1,138 @@
+package io.icker.factions.api.persistents;
+
+import io.icker.factions.FactionsMod;
+import io.icker.factions.api.persistents.Relationship.Permissions;
+import io.icker.factions.api.persistents.Relationship.Status;
+import net.minecraft.util.Formatting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the compiled access tables of {@link Faction#allows} against the rules they replaced, for every
+ * rank, claim access level and permission of every kind of visitor
+ */
+public class FactionAccessTest {
+    private boolean allyOverrides;
+
+    private Faction owner;
+    private Faction ally;
+    private Faction oneSidedAlly;
+    private Faction trusted;
+    private Faction enemy;
+    private Faction stranger;
+
+    private static Faction createFaction(String name) {
+        Faction faction = new Faction(name, "", "", Formatting.WHITE, false, 100);
+        Faction.add(faction);
+        return faction;
+    }
+
+    private static Relationship createRelationship(Faction target, Status status, Permissions... permissions) {
+        Relationship relationship = new Relationship(target.getID(), status);
+        relationship.permissions.addAll(List.of(permissions));
+        return relationship;
+    }
+
+    private static int getRankLevel(User.Rank rank) {
+        return switch (rank) {
+            case OWNER -> 3;
+            case LEADER -> 2;
+            case COMMANDER -> 1;
+            case MEMBER -> 0;
+            case GUEST -> -1;
+        };
+    }
+
+    /**
+     * The protection rules as they were checked for every interaction before the access tables
+     */
+    private static boolean expected(Faction claimFaction, Faction viewer, User.Rank rank, User.Rank accessLevel, Permissions permission) {
+        if (claimFaction == viewer && (getRankLevel(accessLevel) <= getRankLevel(rank) || (rank == User.Rank.GUEST && claimFaction.guest_permissions.contains(permission) && accessLevel == User.Rank.MEMBER))) {
+            return true;
+        }
+
+        if (FactionsMod.CONFIG.RELATIONSHIPS.ALLY_OVERRIDES_PERMISSIONS && claimFaction.isMutualAllies(viewer.getID()) && accessLevel == User.Rank.MEMBER) {
+            return true;
+        }
+
+        return claimFaction.getRelationship(viewer.getID()).permissions.contains(permission) && accessLevel == User.Rank.MEMBER;
+    }
+
+    private void assertMatrix() {
+        for (Faction viewer : List.of(owner, ally, oneSidedAlly, trusted, enemy, stranger)) {
+            for (User.Rank rank : User.Rank.values()) {
+                for (User.Rank accessLevel : User.Rank.values()) {
+                    for (Permissions permission : Permissions.values()) {
+                        assertEquals(expected(owner, viewer, rank, accessLevel, permission), owner.allows(viewer, rank, accessLevel, permission),
+                            viewer.getName() + " " + rank + " in a " + accessLevel + " claim, " + permission);
+                    }
+                }
+            }
+        }
+    }
+
+    @BeforeEach
+    public void createFactions() {
+        allyOverrides = FactionsMod.CONFIG.RELATIONSHIPS.ALLY_OVERRIDES_PERMISSIONS;
+
+        owner = createFaction("Owner");
+        ally = createFaction("Ally");
+        oneSidedAlly = createFaction("OneSidedAlly");
+        trusted = createFaction("Trusted");
+        enemy = createFaction("Enemy");
+        stranger = createFaction("Stranger");
+
+        owner.setGuestPermission(Permissions.PLACE_BLOCKS, true);
+        owner.setGuestPermission(Permissions.USE_BLOCKS, false);
+
+        owner.setRelationship(createRelationship(ally, Status.ALLY, Permissions.BREAK_BLOCKS));
+        ally.setRelationship(createRelationship(owner, Status.ALLY));
+        owner.setRelationship(createRelationship(oneSidedAlly, Status.ALLY, Permissions.USE_INVENTORIES));
+        owner.setRelationship(createRelationship(trusted, Status.NEUTRAL, Permissions.USE_BLOCKS, Permissions.ATTACK_ENTITIES));
+        owner.setRelationship(createRelationship(enemy, Status.ENEMY));
+        enemy.setRelationship(createRelationship(owner, Status.ENEMY, Permissions.PLACE_BLOCKS));
+    }
+
+    @AfterEach
+    public void restoreConfig() {
+        FactionsMod.CONFIG.RELATIONSHIPS.ALLY_OVERRIDES_PERMISSIONS = allyOverrides;
+    }
+
+    @Test
+    public void matchesTheRulesWithAllyOverride() {
+        FactionsMod.CONFIG.RELATIONSHIPS.ALLY_OVERRIDES_PERMISSIONS = true;
+        owner.invalidateAccess();
+        assertMatrix();
+    }
+
+    @Test
+    public void matchesTheRulesWithoutAllyOverride() {
+        FactionsMod.CONFIG.RELATIONSHIPS.ALLY_OVERRIDES_PERMISSIONS = false;
+        owner.invalidateAccess();
+        assertMatrix();
+    }
+
+    @Test
+    public void followsChangesAfterCompiling() {
+        assertMatrix();
+
+        owner.setGuestPermission(Permissions.PLACE_BLOCKS, false);
+        owner.setGuestPermission(Permissions.BREAK_BLOCKS, true);
+        assertMatrix();
+
+        // the other side of the alliance changes, so only the ally's relationship is touched
+        ally.setRelationship(createRelationship(owner, Status.NEUTRAL));
+        assertMatrix();
+        oneSidedAlly.setRelationship(createRelationship(owner, Status.ALLY));
+        assertMatrix();
+
+        owner.setRelationship(createRelationship(stranger, Status.NEUTRAL, Permissions.USE_ENTITIES));
+        owner.removeRelationship(trusted.getID());
+        assertMatrix();
+    }
+}
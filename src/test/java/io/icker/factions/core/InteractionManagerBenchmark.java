@@ -0,0 +1,97 @@
+package io.icker.factions.core;
+
+import io.icker.factions.Benchmark;
+import io.icker.factions.api.persistents.Claim;
+import io.icker.factions.api.persistents.Faction;
+import io.icker.factions.api.persistents.Relationship;
+import io.icker.factions.api.persistents.Relationship.Permissions;
+import io.icker.factions.api.persistents.User;
+import io.icker.factions.util.DecisionCache;
+import io.icker.factions.util.WorldUtils;
+import net.minecraft.util.ActionResult;
+import net.minecraft.util.Formatting;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Protection checks under an auto-clicker load: a few players clicking as fast as they can, each in the
+ * chunk they stand in. Measured once answered from the decision caches and once with the caches dropped
+ * before every check, which is what every check cost without them.
+ */
+@Tag(Benchmark.TAG)
+public class InteractionManagerBenchmark {
+    private static final String LEVEL = "minecraft:overworld";
+    private static final int SIDE = 32;
+    private static final int CHECKS = 10_000_000;
+    private static final Permissions[] CLICKS = {Permissions.BREAK_BLOCKS, Permissions.USE_BLOCKS, Permissions.PLACE_BLOCKS, Permissions.USE_BLOCKS};
+
+    private static User createUser(Faction faction, User.Rank rank) {
+        User user = new User(UUID.randomUUID());
+        User.add(user);
+        if (faction != null) user.joinFaction(faction.getID(), rank);
+        return user;
+    }
+
+    @Test
+    public void autoClicker() {
+        Faction owner = new Faction("BenchmarkOwner", "", "", Formatting.WHITE, false, 100);
+        Faction visitor = new Faction("BenchmarkVisitor", "", "", Formatting.WHITE, false, 100);
+        Faction.add(owner);
+        Faction.add(visitor);
+
+        Relationship relationship = new Relationship(visitor.getID(), Relationship.Status.NEUTRAL);
+        relationship.permissions.add(Permissions.USE_BLOCKS);
+        owner.setRelationship(relationship);
+
+        ArrayList<Claim> claims = new ArrayList<Claim>();
+        for (int x = 0; x < SIDE; x++) {
+            for (int z = 0; z < SIDE; z++) {
+                claims.add(new Claim(x, z, LEVEL, owner.getID()));
+            }
+        }
+        Claim.addAll(claims);
+
+        // a member, a guest, a player of a faction with some permissions, one without a faction and one outside the claims
+        User[] users = {
+            createUser(owner, User.Rank.MEMBER),
+            createUser(owner, User.Rank.GUEST),
+            createUser(visitor, User.Rank.MEMBER),
+            createUser(null, null),
+            createUser(visitor, User.Rank.OWNER),
+        };
+        int[] xs = {3, 7, 12, 20, SIDE + 5};
+        int[] zs = {4, 9, 15, 30, 2};
+        int level = WorldUtils.getID(LEVEL);
+
+        int[] hits = new int[ActionResult.values().length];
+        Benchmark.Result cached = Benchmark.measure("checks, cached", CHECKS, () -> {
+            for (int i = 0; i < CHECKS; i++) {
+                int player = i % users.length;
+                ActionResult decision = InteractionManager.checkPermissions(users[player], level, xs[player], zs[player], CLICKS[i & 3]);
+                hits[decision.ordinal()]++;
+            }
+        });
+        System.out.printf("decision cache hit rate %.4f%n", DecisionCache.getHitRate());
+
+        int[] misses = new int[ActionResult.values().length];
+        Benchmark.Result uncached = Benchmark.measure("checks, cache dropped every check", CHECKS, () -> {
+            for (int i = 0; i < CHECKS; i++) {
+                int player = i % users.length;
+                DecisionCache.invalidateAll();
+                ActionResult decision = InteractionManager.checkPermissions(users[player], level, xs[player], zs[player], CLICKS[i & 3]);
+                misses[decision.ordinal()]++;
+            }
+        });
+        Benchmark.compare(uncached, cached);
+
+        assertArrayEquals(hits, misses);
+        assertTrue(hits[ActionResult.SUCCESS.ordinal()] > 0 && hits[ActionResult.FAIL.ordinal()] > 0 && hits[ActionResult.PASS.ordinal()] > 0);
+        assertTrue(cached.bytesPerOperation() < 1, "cached checks allocate");
+    }
+}
@@ -0,0 +1,130 @@
+package io.icker.factions.database;
+
+import io.icker.factions.Benchmark;
+import io.icker.factions.api.persistents.Claim;
+import io.icker.factions.api.persistents.User.Rank;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Serializes and deserializes a million claims through the method handle codecs and through the field
+ * reflection they replaced
+ */
+@Tag(Benchmark.TAG)
+public class CodecBenchmark {
+    private static final int CLAIMS = 1_000_000;
+    /**
+     * Distinct compounds decoded over and over, so the benchmark does not hold a million of them at once
+     */
+    private static final int COMPOUNDS = 10_000;
+
+    /**
+     * The reflection path as it was before the codecs, limited to the registered field types claims use
+     */
+    private static class ReflectionCodec<T> {
+        private final Class<T> clazz;
+        private final HashMap<String, Field> fields = new HashMap<String, Field>();
+
+        ReflectionCodec(Class<T> clazz) {
+            this.clazz = clazz;
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.isAnnotationPresent(io.icker.factions.database.Field.class)) {
+                    field.setAccessible(true);
+                    fields.put(field.getAnnotation(io.icker.factions.database.Field.class).value(), field);
+                }
+            }
+        }
+
+        NbtCompound serialize(T item) throws ReflectiveOperationException {
+            NbtCompound compound = new NbtCompound();
+            for (Map.Entry<String, Field> entry : fields.entrySet()) {
+                Object data = entry.getValue().get(item);
+                if (data == null) continue;
+
+                compound.put(entry.getKey(), SerializerRegistry.toNbtElement(entry.getValue().getType(), Database.cast(data)));
+            }
+            return compound;
+        }
+
+        T deserialize(NbtCompound compound) throws ReflectiveOperationException {
+            T item = clazz.getDeclaredConstructor().newInstance();
+            for (Map.Entry<String, Field> entry : fields.entrySet()) {
+                if (!compound.contains(entry.getKey())) continue;
+
+                entry.getValue().set(item, SerializerRegistry.fromNbtElement(entry.getValue().getType(), compound.get(entry.getKey())));
+            }
+            return item;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run(int i) throws Exception;
+    }
+
+    private static Runnable repeat(int times, Step step) {
+        return () -> {
+            try {
+                for (int i = 0; i < times; i++) {
+                    step.run(i);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    private static Claim[] createClaims() {
+        UUID[] factions = new UUID[1000];
+        for (int i = 0; i < factions.length; i++) {
+            factions[i] = UUID.randomUUID();
+        }
+
+        Claim[] claims = new Claim[CLAIMS];
+        for (int i = 0; i < CLAIMS; i++) {
+            claims[i] = new Claim(i % 1000 - 500, i / 1000 - 500, "minecraft:overworld", factions[i % factions.length]);
+            if (i % 7 == 0) claims[i].accessLevel = Rank.COMMANDER;
+        }
+        return claims;
+    }
+
+    @Test
+    public void serializeAndDeserialize() throws Exception {
+        Claim[] claims = createClaims();
+        ReflectionCodec<Claim> reflection = new ReflectionCodec<Claim>(Claim.class);
+        // encoding once sets up the codec, which the benchmarked calls expect to exist
+        Database.encode(Claim.class, claims[0]);
+
+        NbtCompound[] compounds = new NbtCompound[COMPOUNDS];
+        for (int i = 0; i < COMPOUNDS; i++) {
+            compounds[i] = (NbtCompound) Database.serialize(Claim.class, claims[i]);
+            assertEquals(reflection.serialize(claims[i]), compounds[i]);
+            assertEquals(compounds[i], Database.serialize(Claim.class, reflection.deserialize(compounds[i])));
+        }
+
+        NbtElement[] sink = new NbtElement[1];
+        Benchmark.Result reflectionWrite = Benchmark.measure("serialize, reflection", CLAIMS,
+            repeat(CLAIMS, i -> sink[0] = reflection.serialize(claims[i])));
+        Benchmark.Result codecWrite = Benchmark.measure("serialize, method handles", CLAIMS,
+            repeat(CLAIMS, i -> sink[0] = Database.serialize(Claim.class, claims[i])));
+        Benchmark.compare(reflectionWrite, codecWrite);
+
+        Claim[] decoded = new Claim[1];
+        Benchmark.Result reflectionRead = Benchmark.measure("deserialize, reflection", CLAIMS,
+            repeat(CLAIMS, i -> decoded[0] = reflection.deserialize(compounds[i % COMPOUNDS])));
+        Benchmark.Result codecRead = Benchmark.measure("deserialize, method handles", CLAIMS,
+            repeat(CLAIMS, i -> decoded[0] = Database.deserialize(Claim.class, compounds[i % COMPOUNDS])));
+        Benchmark.compare(reflectionRead, codecRead);
+
+        assertEquals(claims[(CLAIMS - 1) % COMPOUNDS].x, decoded[0].x);
+    }
+}
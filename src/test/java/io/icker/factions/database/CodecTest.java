@@ -0,0 +1,163 @@
+package io.icker.factions.database;
+
+import io.icker.factions.api.persistents.Relationship.Permissions;
+import io.icker.factions.api.persistents.Relationship.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CodecTest {
+    private static class Part {
+        @Field("Name")
+        String name;
+
+        @Field("Weight")
+        int weight;
+
+        Part() {}
+
+        Part(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+    }
+
+    private static class Item {
+        @Field("Int")
+        int intValue;
+
+        @Field("Long")
+        long longValue;
+
+        @Field("Float")
+        float floatValue;
+
+        @Field("Double")
+        double doubleValue;
+
+        @Field("Boolean")
+        boolean booleanValue;
+
+        @Field("Short")
+        short shortValue;
+
+        @Field("Byte")
+        byte byteValue;
+
+        @Field("String")
+        String string;
+
+        @Field("Default")
+        String withDefault = "default";
+
+        @Field("ID")
+        UUID id;
+
+        @Field("Status")
+        Status status;
+
+        @Field("Targets")
+        ArrayList<UUID> targets = new ArrayList<UUID>();
+
+        @Field("Permissions")
+        ArrayList<Permissions> permissions = new ArrayList<Permissions>();
+
+        @Field("Part")
+        Part part;
+
+        @Field("Parts")
+        ArrayList<Part> parts = new ArrayList<Part>();
+
+        Item() {}
+    }
+
+    private static Item createItem() {
+        Item item = new Item();
+        item.intValue = -7;
+        item.longValue = Long.MAX_VALUE;
+        item.floatValue = 1.5f;
+        item.doubleValue = -2.25;
+        item.booleanValue = true;
+        item.shortValue = Short.MIN_VALUE;
+        item.byteValue = 42;
+        item.string = "name";
+        item.id = UUID.randomUUID();
+        item.status = Status.ENEMY;
+        item.targets.addAll(List.of(UUID.randomUUID(), UUID.randomUUID()));
+        item.permissions.addAll(List.of(Permissions.BREAK_BLOCKS, Permissions.USE_INVENTORIES));
+        item.part = new Part("core", 3);
+        item.parts.addAll(List.of(new Part("a", 1), new Part("b", 2)));
+        return item;
+    }
+
+    private static void assertSameValues(Item expected, Item actual) {
+        assertEquals(expected.intValue, actual.intValue);
+        assertEquals(expected.longValue, actual.longValue);
+        assertEquals(expected.floatValue, actual.floatValue);
+        assertEquals(expected.doubleValue, actual.doubleValue);
+        assertEquals(expected.booleanValue, actual.booleanValue);
+        assertEquals(expected.shortValue, actual.shortValue);
+        assertEquals(expected.byteValue, actual.byteValue);
+        assertEquals(expected.string, actual.string);
+        assertEquals(expected.withDefault, actual.withDefault);
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.status, actual.status);
+        assertEquals(expected.targets, actual.targets);
+        assertEquals(expected.permissions, actual.permissions);
+        assertEquals(expected.part.name, actual.part.name);
+        assertEquals(expected.part.weight, actual.part.weight);
+        assertEquals(expected.parts.size(), actual.parts.size());
+        for (int i = 0; i < expected.parts.size(); i++) {
+            assertEquals(expected.parts.get(i).name, actual.parts.get(i).name);
+            assertEquals(expected.parts.get(i).weight, actual.parts.get(i).weight);
+        }
+    }
+
+    @Test
+    public void roundTripKeepsEveryField() throws Exception {
+        Item item = createItem();
+        item.withDefault = "changed";
+
+        assertSameValues(item, Database.decode(Item.class, Database.encode(Item.class, item)));
+    }
+
+    @Test
+    public void emptyValuesRoundTrip() throws Exception {
+        Item item = new Item();
+        item.withDefault = null;
+
+        Item decoded = Database.decode(Item.class, Database.encode(Item.class, item));
+        assertEquals(0, decoded.intValue);
+        assertNull(decoded.string);
+        assertNull(decoded.part);
+        assertEquals(List.of(), decoded.targets);
+        // null fields are not written, so decoding leaves the field as the constructor set it
+        assertEquals("default", decoded.withDefault);
+    }
+
+    @Test
+    public void copyIsUnaffectedByLaterChanges() throws Exception {
+        Item item = createItem();
+        Item copy = Database.copy(Item.class, item);
+        assertSameValues(item, copy);
+        assertNotSame(item.targets, copy.targets);
+        assertNotSame(item.part, copy.part);
+
+        Item expected = Database.decode(Item.class, Database.encode(Item.class, item));
+        item.intValue++;
+        item.targets.add(UUID.randomUUID());
+        item.permissions.clear();
+        item.part.weight = 100;
+        item.parts.get(0).name = "changed";
+        item.parts.remove(1);
+
+        assertSameValues(expected, copy);
+        assertSameValues(expected, Database.decode(Item.class, Database.encode(Item.class, copy)));
+    }
+}
@@ -0,0 +1,85 @@
+package io.icker.factions.database;
+
+import io.icker.factions.Benchmark;
+import io.icker.factions.api.persistents.Claim;
+import io.icker.factions.util.WorldUtils;
+import net.minecraft.util.math.ChunkPos;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Looks claims up by chunk through the string keyed map claims used to be kept in, a bare
+ * {@link LongObjectMap} and a {@link RegionStore}, counting the bytes each lookup allocates
+ */
+@Tag(Benchmark.TAG)
+public class LongObjectMapBenchmark {
+    private static final String LEVEL = "minecraft:overworld";
+    /**
+     * Claims fill a square of this many chunks per side, lookups land on a square twice as wide so half of them miss
+     */
+    private static final int SIDE = 256;
+    private static final int LOOKUPS = 10_000_000;
+    private static final int POSITIONS = 1 << 16;
+
+    private static String getKey(String level, int x, int z) {
+        return String.format("%s-%d-%d", level, x, z);
+    }
+
+    @Test
+    public void lookups() {
+        HashMap<String, Claim> strings = new HashMap<String, Claim>();
+        LongObjectMap<Claim> longs = new LongObjectMap<Claim>();
+        RegionStore<Claim> regions = new RegionStore<Claim>(Claim.class, null, "benchmark", c -> c.level, c -> c.x, c -> c.z, c -> c.factionID);
+
+        UUID faction = UUID.randomUUID();
+        for (int x = 0; x < SIDE; x++) {
+            for (int z = 0; z < SIDE; z++) {
+                Claim claim = new Claim(x, z, LEVEL, faction);
+                strings.put(getKey(LEVEL, x, z), claim);
+                longs.put(ChunkPos.toLong(x, z), claim);
+                regions.put(claim);
+            }
+        }
+        int level = WorldUtils.getID(LEVEL);
+
+        // precomputed so the lookups are all that is measured
+        Random random = new Random(42);
+        int[] xs = new int[POSITIONS];
+        int[] zs = new int[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            xs[i] = random.nextInt(SIDE * 2) - SIDE / 2;
+            zs[i] = random.nextInt(SIDE * 2) - SIDE / 2;
+        }
+
+        int[] found = new int[3];
+        Benchmark.Result before = Benchmark.measure("String.format and HashMap", LOOKUPS, () -> {
+            for (int i = 0; i < LOOKUPS; i++) {
+                if (strings.get(getKey(LEVEL, xs[i & (POSITIONS - 1)], zs[i & (POSITIONS - 1)])) != null) found[0]++;
+            }
+        });
+        Benchmark.Result map = Benchmark.measure("LongObjectMap", LOOKUPS, () -> {
+            for (int i = 0; i < LOOKUPS; i++) {
+                if (longs.get(ChunkPos.toLong(xs[i & (POSITIONS - 1)], zs[i & (POSITIONS - 1)])) != null) found[1]++;
+            }
+        });
+        Benchmark.Result store = Benchmark.measure("RegionStore", LOOKUPS, () -> {
+            for (int i = 0; i < LOOKUPS; i++) {
+                if (regions.get(level, xs[i & (POSITIONS - 1)], zs[i & (POSITIONS - 1)]) != null) found[2]++;
+            }
+        });
+        Benchmark.compare(before, map);
+        Benchmark.compare(before, store);
+
+        assertEquals(found[0], found[1]);
+        assertEquals(found[0], found[2]);
+        assertTrue(map.bytesPerOperation() < 1, "LongObjectMap lookups allocate");
+        assertTrue(store.bytesPerOperation() < 1, "RegionStore lookups allocate");
+    }
+}
@@ -0,0 +1,125 @@
+package io.icker.factions.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongObjectMapTest {
+    /**
+     * Slots of a new map, it only grows once more than half of them are taken
+     */
+    private static final int CAPACITY = 16;
+
+    /**
+     * Same hash as the map, so the tests can pick keys that land on the same slot
+     */
+    private static int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (CAPACITY - 1);
+    }
+
+    private static List<Long> keysInSlot(int slot, int count) {
+        ArrayList<Long> keys = new ArrayList<Long>();
+        for (long key = 0; keys.size() < count; key++) {
+            if (slot(key) == slot) keys.add(key);
+        }
+        return keys;
+    }
+
+    private static void assertContainsExactly(LongObjectMap<String> map, List<Long> keys) {
+        assertEquals(keys.size(), map.size());
+        for (long key : keys) {
+            assertEquals("v" + key, map.get(key), "lost " + key);
+        }
+    }
+
+    @Test
+    public void removingFromACollisionChainKeepsTheRestReachable() {
+        for (int removed = 0; removed < 4; removed++) {
+            List<Long> keys = keysInSlot(3, 4);
+            LongObjectMap<String> map = new LongObjectMap<String>();
+            for (long key : keys) map.put(key, "v" + key);
+
+            long key = keys.remove(removed);
+            assertEquals("v" + key, map.remove(key));
+            assertNull(map.get(key));
+            assertNull(map.remove(key));
+            assertContainsExactly(map, keys);
+        }
+    }
+
+    @Test
+    public void removalShiftsBackAcrossTheEndOfTheTable() {
+        // a chain that starts in the last slot and wraps around, followed by a key whose own slot is 0
+        ArrayList<Long> keys = new ArrayList<Long>(keysInSlot(CAPACITY - 1, 3));
+        long first = keysInSlot(0, 1).get(0);
+        keys.add(first);
+
+        LongObjectMap<String> map = new LongObjectMap<String>();
+        for (long key : keys) map.put(key, "v" + key);
+
+        while (!keys.isEmpty()) {
+            long key = keys.remove(0);
+            map.remove(key);
+            assertFalse(map.containsKey(key));
+            assertContainsExactly(map, keys);
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void entriesInTheirOwnSlotAreNotShiftedBack() {
+        // the key of slot 6 directly follows the chain of slot 4 in slots 4 and 5, but must stay where it is
+        List<Long> chain = keysInSlot(4, 2);
+        long own = keysInSlot(6, 1).get(0);
+
+        LongObjectMap<String> map = new LongObjectMap<String>();
+        map.put(chain.get(0), "v" + chain.get(0));
+        map.put(chain.get(1), "v" + chain.get(1));
+        map.put(own, "v" + own);
+
+        map.remove(chain.get(0));
+        assertContainsExactly(map, List.of(chain.get(1), own));
+        map.remove(chain.get(1));
+        assertContainsExactly(map, List.of(own));
+    }
+
+    @Test
+    public void matchesHashMapUnderRandomChanges() {
+        Random random = new Random(7);
+        LongObjectMap<String> map = new LongObjectMap<String>();
+        HashMap<Long, String> expected = new HashMap<Long, String>();
+
+        // few distinct keys so the same ones are put and removed over and over, while the map grows and collides
+        for (int round = 0; round < 100000; round++) {
+            long key = random.nextInt(200) - 100;
+            switch (random.nextInt(4)) {
+                case 0 -> assertEquals(expected.remove(key), map.remove(key));
+                case 1 -> assertEquals(expected.get(key), map.get(key));
+                default -> {
+                    String value = "v" + round;
+                    assertEquals(expected.put(key, value), map.put(key, value));
+                }
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        HashMap<Long, String> visited = new HashMap<Long, String>();
+        map.forEach((key, value) -> assertNull(visited.put(key, value), "visited twice"));
+        assertEquals(expected, visited);
+
+        assertEquals(map.removeIf(value -> value.endsWith("1")), expected.values().removeIf(value -> value.endsWith("1")));
+        for (long key = -100; key < 100; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        assertEquals(expected.size(), map.values().size());
+    }
+}
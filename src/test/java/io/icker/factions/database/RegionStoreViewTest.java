@@ -0,0 +1,115 @@
+package io.icker.factions.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RegionStoreViewTest {
+    private static final String LEVEL = "factions:test";
+    private static final int PAIRS = 64;
+    /**
+     * Far enough that the two chunks of a pair are always in different regions
+     */
+    private static final int OFFSET = RegionStore.REGION_SIZE * 3;
+
+    private record Item(String level, int x, int z, UUID owner) {}
+
+    private static RegionStore<Item> createStore() {
+        return new RegionStore<Item>(Item.class, null, "test", Item::level, Item::x, Item::z, Item::owner);
+    }
+
+    @Test
+    public void viewFollowsPublishedChanges() {
+        RegionStore<Item> store = createStore();
+        store.enableSnapshots();
+
+        UUID owner = UUID.randomUUID();
+        store.put(new Item(LEVEL, 1, 2, owner));
+        assertNull(store.getView().getOwner(LEVEL, 1, 2));
+
+        store.publish();
+        assertEquals(owner, store.getView().getOwner(LEVEL, 1, 2));
+        assertNull(store.getView().getOwner(LEVEL, 2, 1));
+        assertEquals(1, store.getView().size());
+
+        RegionStore.View before = store.getView();
+        store.remove(LEVEL, 1, 2);
+        store.publish();
+        assertNull(store.getView().getOwner(LEVEL, 1, 2));
+        assertEquals(owner, before.getOwner(LEVEL, 1, 2));
+        assertTrue(store.getView().getVersion() > before.getVersion());
+    }
+
+    @Test
+    public void readersNeverSeeHalfOfAPublish() throws Throwable {
+        RegionStore<Item> store = createStore();
+        store.enableSnapshots();
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        ArrayList<Thread> readers = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                long lastVersion = 0;
+                try {
+                    while (!done.get()) {
+                        RegionStore.View view = store.getView();
+                        assertTrue(view.getVersion() >= lastVersion, "views went back in time");
+                        lastVersion = view.getVersion();
+
+                        for (int x = 0; x < PAIRS; x++) {
+                            assertEquals(view.getOwner(LEVEL, x, 0), view.getOwner(LEVEL, x + OFFSET, 0), "view holds half of a pair");
+                        }
+
+                        int[] count = {0};
+                        view.forEach((level, x, z, owner) -> {
+                            assertEquals(owner, view.getOwner(level, x, z));
+                            count[0]++;
+                        });
+                        assertEquals(view.size(), count[0]);
+                        assertEquals(0, count[0] % 2, "view holds half of a pair");
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+
+        // the writer changes both chunks of a pair between publishes, so a consistent view always has both or neither
+        Random random = new Random(42);
+        for (int round = 0; round < 20000; round++) {
+            int x = random.nextInt(PAIRS);
+            if (random.nextInt(3) == 0) {
+                store.remove(LEVEL, x, 0);
+                store.remove(LEVEL, x + OFFSET, 0);
+            } else {
+                UUID owner = UUID.randomUUID();
+                store.put(new Item(LEVEL, x, 0, owner));
+                store.put(new Item(LEVEL, x + OFFSET, 0, owner));
+            }
+            store.publish();
+        }
+
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (failure.get() != null) throw failure.get();
+
+        RegionStore.View view = store.getView();
+        for (int x = 0; x < PAIRS; x++) {
+            Item item = store.get(LEVEL, x, 0);
+            assertEquals(item == null ? null : item.owner(), view.getOwner(LEVEL, x, 0));
+        }
+    }
+}